@@ -15,12 +15,22 @@
  */
 package org.codelibs.fess.ds.wikipedia;
 
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLEncoder;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.StringUtils;
@@ -32,8 +42,21 @@ import org.codelibs.fess.crawler.exception.CrawlingAccessException;
 import org.codelibs.fess.crawler.exception.MultipleCrawlingAccessException;
 import org.codelibs.fess.ds.AbstractDataStore;
 import org.codelibs.fess.ds.callback.IndexUpdateCallback;
+import org.codelibs.fess.ds.wikipedia.decompressor.DumpDecompressors;
 import org.codelibs.fess.ds.wikipedia.exception.ParserStoppedException;
+import org.codelibs.fess.ds.wikipedia.support.CrawlCheckpoint;
+import org.codelibs.fess.ds.wikipedia.support.LayeredMap;
+import org.codelibs.fess.ds.wikipedia.support.PageFilter;
+import org.codelibs.fess.ds.wikipedia.support.PagePipeline;
+import org.codelibs.fess.ds.wikipedia.support.PageStateStore;
+import org.codelibs.fess.ds.wikipedia.support.ScriptExpression;
+import org.codelibs.fess.ds.wikipedia.support.TitleUtil;
+import org.codelibs.fess.ds.wikipedia.support.WikiPage;
+import org.codelibs.fess.ds.wikipedia.support.WikiXMLParser;
+import org.codelibs.fess.ds.wikipedia.support.WikiXMLPullParser;
 import org.codelibs.fess.ds.wikipedia.support.WikiXMLSAXParser;
+import org.codelibs.fess.ds.wikipedia.support.WikiXMLScanner;
+import org.codelibs.fess.ds.wikipedia.support.WikiXMLStAXParser;
 import org.codelibs.fess.entity.DataStoreParams;
 import org.codelibs.fess.exception.DataStoreCrawlingException;
 import org.codelibs.fess.exception.DataStoreException;
@@ -59,6 +82,18 @@ public class WikipediaDataStore extends AbstractDataStore {
         super();
     }
 
+    private static final String PARSER_TYPE_STAX = "stax";
+
+    private static final String PARSER_TYPE_SAX = "sax";
+
+    private static final String PARSER_TYPE_SCANNER = "scanner";
+
+    /** The parameter of the data config to keep the documents which are not updated in a crawl. */
+    private static final String DELETE_OLD_DOCS = "delete_old_docs";
+
+    /** The number of the fields put into the result map of a page. */
+    private static final int RESULT_FIELD_SIZE = 10;
+
     private static final String DEFAULT_WIKIPEDIA_URL = "http://download.wikimedia.org/enwiki/latest/enwiki-latest-pages-articles.xml.bz2";
 
     @Override
@@ -69,33 +104,511 @@ public class WikipediaDataStore extends AbstractDataStore {
     @Override
     protected void storeData(final DataConfig dataConfig, final IndexUpdateCallback callback, final DataStoreParams paramMap,
             final Map<String, String> scriptMap, final Map<String, Object> defaultDataMap) {
-        final CrawlerStatsHelper crawlerStatsHelper = ComponentUtil.getCrawlerStatsHelper();
-
-        final long readInterval = getReadInterval(paramMap);
-        final URL wikipediaUrl = getWikipediaUrl(paramMap);
-        final int limit = Integer.parseInt(paramMap.getAsString("limit", "0"));
+        final List<URL> wikipediaUrls = getWikipediaUrls(paramMap);
         final int totalEntitySizeLimit = Integer.parseInt(paramMap.getAsString("total_entity_size_limit", "100000000"));
-        final int maxDigestLength = Integer.parseInt(paramMap.getAsString("max_digest_length", "100"));
-        final String scriptType = getScriptType(paramMap);
-        logger.info("url: {}", wikipediaUrl);
-        final AtomicInteger counter = new AtomicInteger();
-        final WikiXMLSAXParser xmlParser = new WikiXMLSAXParser(wikipediaUrl);
-        xmlParser.setTotalEntitySizeLimit(totalEntitySizeLimit);
-        xmlParser.setPageCallback(page -> {
+        final URL multiStreamIndexUrl = getMultiStreamIndexUrl(paramMap);
+        final int decompressThreadSize =
+                Integer.parseInt(paramMap.getAsString("decompress_thread_size", Integer.toString(Runtime.getRuntime().availableProcessors())));
+        final String decompressor = paramMap.getAsString("decompressor", DumpDecompressors.AUTO);
+        final int threadSize = Integer.parseInt(paramMap.getAsString("thread_size", "1"));
+        final int queueSize = Integer.parseInt(paramMap.getAsString("queue_size", "100"));
+        final boolean preserveOrder = Boolean.parseBoolean(paramMap.getAsString("preserve_order", "false"));
+        final String parserType = paramMap.getAsString("parser_type", PARSER_TYPE_STAX);
+        if (multiStreamIndexUrl != null && wikipediaUrls.size() > 1) {
+            throw new DataStoreException("multistream_index_url cannot be used with multiple dumps.");
+        }
+        final long startPageId = getLong(paramMap, "start_page_id");
+        final long endPageId = getLong(paramMap, "end_page_id");
+        final long startOffset = getLong(paramMap, "start_offset");
+        final long endOffset = getLong(paramMap, "end_offset");
+        if ((startOffset >= 0 || endOffset >= 0) && multiStreamIndexUrl == null) {
+            throw new DataStoreException("start_offset and end_offset require multistream_index_url.");
+        }
+        checkOldDocsKept(paramMap, "state_file");
+        checkOldDocsKept(paramMap, "checkpoint_file");
+        final CrawlCheckpoint checkpoint = loadCheckpoint(paramMap);
+        int startIndex = 0;
+        long resumePageId = -1;
+        if (checkpoint != null && checkpoint.getUrl() != null) {
+            startIndex = indexOf(wikipediaUrls, checkpoint.getUrl());
+            resumePageId = parsePageId(checkpoint.getPageId());
+            if (startIndex < 0 || resumePageId < 0) {
+                logger.warn("Ignored the checkpoint of {} at page {}, which is not in the dumps.", checkpoint.getUrl(),
+                        checkpoint.getPageId());
+                startIndex = 0;
+                resumePageId = -1;
+            } else {
+                resumePageId++;
+            }
+        }
+        PageFilter pageFilter = createPageFilter(paramMap);
+        if (pageFilter == null && (resumePageId >= 0 || startPageId >= 0 || endPageId >= 0)) {
+            // the pages out of the range in the streams to read are skipped by the filter
+            pageFilter = new PageFilter();
+        }
+        final Path stateFile = getStateFile(paramMap);
+        final PageStateStore pageStateStore = loadPageStateStore(stateFile);
+        final PageProcessor pageProcessor = new PageProcessor(dataConfig, callback, paramMap, scriptMap, defaultDataMap);
+        pageProcessor.setPageStateStore(pageStateStore);
+        boolean completed = false;
+        boolean flushed = false;
+        try {
+            // incremental dumps follow a full dump, and a page in a later dump replaces the earlier one
+            for (int i = startIndex; i < wikipediaUrls.size(); i++) {
+                final URL wikipediaUrl = wikipediaUrls.get(i);
+                logger.info("url: {}", wikipediaUrl);
+                final WikiXMLParser xmlParser = createParser(parserType, wikipediaUrl, totalEntitySizeLimit);
+                xmlParser.setDecompressThreadSize(decompressThreadSize);
+                xmlParser.setDecompressor(decompressor);
+                if (multiStreamIndexUrl != null) {
+                    logger.info("multistream index: {}", multiStreamIndexUrl);
+                    xmlParser.setMultiStreamIndexFile(multiStreamIndexUrl);
+                }
+                long minPageId = startPageId;
+                if (i == startIndex && resumePageId > startPageId) {
+                    logger.info("Resume crawling from page {}.", resumePageId);
+                    minPageId = resumePageId;
+                }
+                xmlParser.setStartPageId(minPageId);
+                xmlParser.setEndPageId(endPageId);
+                xmlParser.setStartOffset(startOffset);
+                xmlParser.setEndOffset(endOffset);
+                if (pageFilter != null) {
+                    pageFilter.setMinPageId(minPageId);
+                    pageFilter.setMaxPageId(endPageId);
+                }
+                xmlParser.setPageFilter(pageFilter);
+                if (!crawl(wikipediaUrl, xmlParser, pageProcessor, checkpoint, threadSize, queueSize, preserveOrder)) {
+                    break;
+                }
+                completed = i == wikipediaUrls.size() - 1;
+            }
+        } finally {
+            // the buffered documents are stored before the state and the checkpoint are saved
+            flushed = pageProcessor.close();
+            if (pageFilter != null) {
+                logger.info("Skipped {} pages by the page filter.", pageFilter.getSkippedCount());
+            }
+            if (pageStateStore != null) {
+                // only stored pages are updated, so the state is consistent even if the crawling is stopped
+                logger.info("Skipped {} unchanged pages.", pageStateStore.getUnchangedCount());
+                try {
+                    pageStateStore.save(stateFile);
+                } catch (final IOException e) {
+                    logger.warn("Failed to save the page state to {}", stateFile, e);
+                }
+            }
+            if (checkpoint != null) {
+                try {
+                    if (completed) {
+                        checkpoint.delete();
+                    } else if (flushed) {
+                        checkpoint.save();
+                        logger.info("Saved the checkpoint at page {} of {}", checkpoint.getPageId(), checkpoint.getUrl());
+                    } else {
+                        // buffered documents after the last saved checkpoint may be discarded
+                        logger.info("Kept the last saved checkpoint {}", checkpoint.getFile());
+                    }
+                } catch (final IOException e) {
+                    logger.warn("Failed to update the checkpoint {}", checkpoint.getFile(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores the pages of a dump.
+     *
+     * @return false if the crawling is stopped
+     */
+    private boolean crawl(final URL wikipediaUrl, final WikiXMLParser xmlParser, final PageProcessor pageProcessor,
+            final CrawlCheckpoint checkpoint, final int threadSize, final int queueSize, final boolean preserveOrder) {
+        try {
+            if (threadSize > 0 && preserveOrder) {
+                // workers transform pages, and the crawler thread stores them in the order of the dump
+                try (PagePipeline<PageData> pipeline = new PagePipeline<>(xmlParser, pageProcessor::transform, threadSize, queueSize, true)) {
+                    pipeline.setDiscardHandler(pageProcessor::discard);
+                    while (pipeline.hasNext()) {
+                        updateCheckpoint(checkpoint, pageProcessor, wikipediaUrl, pipeline.getCompletedPageId());
+                        if (!pageProcessor.store(pipeline.next())) {
+                            return false;
+                        }
+                    }
+                }
+            } else if (threadSize > 0) {
+                // workers transform and store pages concurrently
+                try (PagePipeline<Boolean> pipeline =
+                        new PagePipeline<>(xmlParser, page -> pageProcessor.store(pageProcessor.transform(page)), threadSize, queueSize)) {
+                    while (pipeline.hasNext()) {
+                        updateCheckpoint(checkpoint, pageProcessor, wikipediaUrl, pipeline.getCompletedPageId());
+                        if (!pipeline.next()) {
+                            return false;
+                        }
+                    }
+                }
+            } else if (xmlParser instanceof final WikiXMLPullParser pullParser) {
+                final Iterator<WikiPage> pages = pullParser.iterator();
+                while (pages.hasNext()) {
+                    final WikiPage page = pages.next();
+                    if (!pageProcessor.store(pageProcessor.transform(page))) {
+                        return false;
+                    }
+                    updateCheckpoint(checkpoint, pageProcessor, wikipediaUrl, page.getId());
+                }
+            } else {
+                xmlParser.setPageCallback(page -> {
+                    if (!pageProcessor.store(pageProcessor.transform(page))) {
+                        throw new ParserStoppedException(page.getId());
+                    }
+                    updateCheckpoint(checkpoint, pageProcessor, wikipediaUrl, page.getId());
+                });
+                xmlParser.parse();
+            }
+            return true;
+        } catch (final ParserStoppedException e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Wikipedia crawler is stopped at " + e.getMessage(), e);
+            }
+            return false;
+        } finally {
+            try {
+                xmlParser.close();
+            } catch (final IOException e) {
+                logger.warn("Failed to close {}", wikipediaUrl, e);
+            }
+        }
+    }
+
+    private void updateCheckpoint(final CrawlCheckpoint checkpoint, final PageProcessor pageProcessor, final URL wikipediaUrl,
+            final String pageId) {
+        if (checkpoint != null) {
+            if (pageId != null && !pageId.equals(checkpoint.getPageId()) && checkpoint.isDue() && !pageProcessor.flush()) {
+                // the pages up to the checkpoint must be stored, not only buffered, so the progress is not recorded
+                return;
+            }
+            try {
+                checkpoint.update(wikipediaUrl.toExternalForm(), pageId);
+            } catch (final IOException e) {
+                logger.warn("Failed to save the checkpoint {}", checkpoint.getFile(), e);
+            }
+        }
+    }
+
+    /**
+     * Checks that the old documents are kept if the parameter is set.
+     * Fess deletes the documents of the data config which are not updated in a crawl unless delete_old_docs is false,
+     * but the pages skipped as unchanged and the pages stored before a resumed crawl are not updated.
+     */
+    private void checkOldDocsKept(final DataStoreParams paramMap, final String name) {
+        if (StringUtils.isNotBlank(paramMap.getAsString(name)) && !"false".equals(paramMap.getAsString(DELETE_OLD_DOCS))) {
+            throw new DataStoreException(name + " requires " + DELETE_OLD_DOCS + "=false, or the documents not updated in the crawl are deleted.");
+        }
+    }
+
+    private CrawlCheckpoint loadCheckpoint(final DataStoreParams paramMap) {
+        final String value = paramMap.getAsString("checkpoint_file");
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        final long interval = Long.parseLong(paramMap.getAsString("checkpoint_interval", "60000"));
+        final CrawlCheckpoint checkpoint = new CrawlCheckpoint(Paths.get(value.trim()), interval);
+        try {
+            if (checkpoint.load()) {
+                logger.info("checkpoint: {} (page {} of {})", checkpoint.getFile(), checkpoint.getPageId(), checkpoint.getUrl());
+            }
+        } catch (final IOException e) {
+            throw new DataStoreException("Could not load the checkpoint from " + checkpoint.getFile(), e);
+        }
+        return checkpoint;
+    }
+
+    private static int indexOf(final List<URL> urls, final String url) {
+        for (int i = 0; i < urls.size(); i++) {
+            if (urls.get(i).toExternalForm().equals(url)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long parsePageId(final String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long getLong(final DataStoreParams paramMap, final String name) {
+        final String value = paramMap.getAsString(name);
+        if (StringUtils.isBlank(value)) {
+            return -1;
+        }
+        try {
+            final long number = Long.parseLong(value.trim());
+            if (number < 0) {
+                throw new DataStoreException("Invalid " + name + ": " + value);
+            }
+            return number;
+        } catch (final NumberFormatException e) {
+            throw new DataStoreException("Invalid " + name + ": " + value, e);
+        }
+    }
+
+    private Path getStateFile(final DataStoreParams paramMap) {
+        final String value = paramMap.getAsString("state_file");
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        return Paths.get(value.trim());
+    }
+
+    private PageStateStore loadPageStateStore(final Path stateFile) {
+        if (stateFile == null) {
+            return null;
+        }
+        try {
+            final PageStateStore pageStateStore = PageStateStore.load(stateFile);
+            logger.info("page state: {} ({} pages)", stateFile, pageStateStore.size());
+            return pageStateStore;
+        } catch (final IOException e) {
+            throw new DataStoreException("Could not load the page state from " + stateFile, e);
+        }
+    }
+
+    /**
+     * Creates the filter to skip pages before their text is read.
+     *
+     * @param paramMap the data store parameters
+     * @return the page filter, or null if no filter parameter is set
+     */
+    protected PageFilter createPageFilter(final DataStoreParams paramMap) {
+        final String namespaces = paramMap.getAsString("namespaces");
+        final boolean skipRedirects = Boolean.parseBoolean(paramMap.getAsString("skip_redirects", "false"));
+        final String excludedTitlePrefixes = paramMap.getAsString("excluded_title_prefixes");
+        final String models = paramMap.getAsString("models");
+        if (StringUtils.isAllBlank(namespaces, excludedTitlePrefixes, models) && !skipRedirects) {
+            return null;
+        }
+        final PageFilter pageFilter = new PageFilter();
+        if (StringUtils.isNotBlank(namespaces)) {
+            final Set<Integer> namespaceSet = new HashSet<>();
+            for (final String value : StringUtils.split(namespaces, ',')) {
+                try {
+                    namespaceSet.add(Integer.valueOf(value.trim()));
+                } catch (final NumberFormatException e) {
+                    throw new DataStoreException("Invalid namespace: " + value, e);
+                }
+            }
+            pageFilter.setNamespaces(namespaceSet);
+        }
+        pageFilter.setSkipRedirects(skipRedirects);
+        if (StringUtils.isNotBlank(excludedTitlePrefixes)) {
+            // prefixes such as "List of " may end with a space, so they are not trimmed
+            pageFilter.setExcludedTitlePrefixes(StringUtils.split(excludedTitlePrefixes, ','));
+        }
+        if (StringUtils.isNotBlank(models)) {
+            final Set<String> modelSet = new HashSet<>();
+            for (final String value : StringUtils.split(models, ',')) {
+                modelSet.add(value.trim());
+            }
+            pageFilter.setModels(modelSet);
+        }
+        logger.info("page filter: namespaces={}, skip_redirects={}, excluded_title_prefixes={}, models={}", namespaces, skipRedirects,
+                excludedTitlePrefixes, models);
+        return pageFilter;
+    }
+
+    private WikiXMLParser createParser(final String parserType, final URL wikipediaUrl, final int totalEntitySizeLimit) {
+        switch (parserType) {
+        case PARSER_TYPE_STAX: {
+            final WikiXMLStAXParser parser = new WikiXMLStAXParser(wikipediaUrl);
+            parser.setTotalEntitySizeLimit(totalEntitySizeLimit);
+            return parser;
+        }
+        case PARSER_TYPE_SCANNER:
+            return new WikiXMLScanner(wikipediaUrl);
+        case PARSER_TYPE_SAX: {
+            final WikiXMLSAXParser parser = new WikiXMLSAXParser(wikipediaUrl);
+            parser.setTotalEntitySizeLimit(totalEntitySizeLimit);
+            return parser;
+        }
+        default:
+            throw new DataStoreException("Unknown parser_type: " + parserType);
+        }
+    }
+
+    private List<URL> getWikipediaUrls(final DataStoreParams paramMap) {
+        final List<URL> urls = new ArrayList<>();
+        for (final String value : StringUtils.split(paramMap.getAsString("url", DEFAULT_WIKIPEDIA_URL), ',')) {
+            if (StringUtils.isNotBlank(value)) {
+                try {
+                    urls.add(new URL(value.trim()));
+                } catch (final MalformedURLException e) {
+                    throw new DataStoreException("Could not parse Wikipedia URL.", e);
+                }
+            }
+        }
+        if (urls.isEmpty()) {
+            throw new DataStoreException("Wikipedia URL is empty.");
+        }
+        return urls;
+    }
+
+    private URL getMultiStreamIndexUrl(final DataStoreParams paramMap) {
+        final String value = paramMap.getAsString("multistream_index_url");
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        try {
+            return new URL(value);
+        } catch (final MalformedURLException e) {
+            throw new DataStoreException("Could not parse multistream index URL.", e);
+        }
+    }
+
+    /**
+     * Converts pages to documents and stores them.
+     * Both {@link #transform(WikiPage)} and {@link #store(PageData)} may be called concurrently from worker threads.
+     */
+    protected class PageProcessor {
+
+        private final CrawlerStatsHelper crawlerStatsHelper = ComponentUtil.getCrawlerStatsHelper();
+
+        private final DataConfig dataConfig;
+
+        private final IndexUpdateCallback callback;
+
+        private final DataStoreParams paramMap;
+
+        private final Map<String, Object> defaultDataMap;
+
+        private final long readInterval;
+
+        private final int limit;
+
+        private final int maxDigestLength;
+
+        private final String scriptType;
+
+        /** The parameters shared by the result maps of the pages. */
+        private final Map<String, Object> crawlParams;
+
+        private final String[] scriptNames;
+
+        private final String[] scripts;
+
+        /** The scripts compiled once per crawl, or null for those evaluated by the script engine. */
+        private final ScriptExpression[] scriptExpressions;
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private final int bulkSize;
+
+        private final long bulkContentSize;
+
+        private final List<PageData> buffer = new ArrayList<>();
+
+        private long bufferedContentSize;
+
+        private final Object flushLock = new Object();
+
+        private volatile long lastBuffered = System.currentTimeMillis();
+
+        private volatile boolean aborted;
+
+        private ScheduledExecutorService flushScheduler;
+
+        private PageStateStore pageStateStore;
+
+        PageProcessor(final DataConfig dataConfig, final IndexUpdateCallback callback, final DataStoreParams paramMap,
+                final Map<String, String> scriptMap, final Map<String, Object> defaultDataMap) {
+            this.dataConfig = dataConfig;
+            this.callback = callback;
+            this.paramMap = paramMap;
+            this.defaultDataMap = defaultDataMap;
+            readInterval = getReadInterval(paramMap);
+            limit = Integer.parseInt(paramMap.getAsString("limit", "0"));
+            maxDigestLength = Integer.parseInt(paramMap.getAsString("max_digest_length", "100"));
+            scriptType = getScriptType(paramMap);
+            crawlParams = Collections.unmodifiableMap(new HashMap<>(paramMap.asMap()));
+            scriptNames = new String[scriptMap.size()];
+            scripts = new String[scriptMap.size()];
+            scriptExpressions = new ScriptExpression[scriptMap.size()];
+            final boolean groovy = "groovy".equals(scriptType);
+            int index = 0;
+            for (final Map.Entry<String, String> entry : scriptMap.entrySet()) {
+                scriptNames[index] = entry.getKey();
+                scripts[index] = entry.getValue();
+                scriptExpressions[index] = ScriptExpression.compile(entry.getValue(), groovy);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("script {}: {} ({})", entry.getKey(), entry.getValue(),
+                            scriptExpressions[index] != null ? "compiled" : scriptType);
+                }
+                index++;
+            }
+            bulkSize = Integer.parseInt(paramMap.getAsString("bulk_size", "1"));
+            bulkContentSize = Long.parseLong(paramMap.getAsString("bulk_content_size", "0"));
+            final long flushInterval = Long.parseLong(paramMap.getAsString("bulk_flush_interval", "10000"));
+            if (bulkSize > 1 && flushInterval > 0) {
+                // flushes the documents buffered while no page arrives, such as when the dump is read slowly
+                flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                    final Thread thread = new Thread(r, "wikipedia-bulk-flusher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                flushScheduler.scheduleWithFixedDelay(() -> {
+                    try {
+                        if (System.currentTimeMillis() - lastBuffered >= flushInterval) {
+                            flush();
+                        }
+                    } catch (final Throwable t) {
+                        logger.warn("Failed to flush the buffered documents.", t);
+                    }
+                }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * Sets the state to skip the pages which are not changed since the last crawl.
+         *
+         * @param pageStateStore the page state, or null to store all pages
+         */
+        public void setPageStateStore(final PageStateStore pageStateStore) {
+            this.pageStateStore = pageStateStore;
+        }
+
+        /**
+         * Extracts the fields of the page and evaluates the scripts.
+         *
+         * @param page the page
+         * @return the page data, which is marked as failed if an error occurred, or as skipped if the page is not changed
+         */
+        public PageData transform(final WikiPage page) {
+            if (pageStateStore != null && pageStateStore.isUnchanged(page)) {
+                final PageData data = new PageData(page, null, null, null);
+                data.skipped = true;
+                return data;
+            }
             final StatsKeyObject statsKey = new StatsKeyObject(dataConfig.getId() + "#" + page.getId());
-            paramMap.put(Constants.CRAWLER_STATS_KEY, statsKey);
-            final Map<String, Object> dataMap = new HashMap<>(defaultDataMap);
-            final Map<String, Object> resultMap = new LinkedHashMap<>();
+            final DataStoreParams params = paramMap.newInstance();
+            params.put(Constants.CRAWLER_STATS_KEY, statsKey);
+            // the document is passed to the indexer, which may modify it, so it is not shared
+            final Map<String, Object> dataMap = new HashMap<>((int) ((defaultDataMap.size() + scripts.length) / 0.75f) + 1);
+            dataMap.putAll(defaultDataMap);
+            final PageData data = new PageData(page, params, statsKey, dataMap);
+            // the page fields overlay the parameters of the crawl, which are not copied for each page
+            final Map<String, Object> resultMap = new LayeredMap<>(crawlParams, RESULT_FIELD_SIZE);
             try {
                 crawlerStatsHelper.begin(statsKey);
-                resultMap.putAll(paramMap.asMap());
+                resultMap.put(Constants.CRAWLER_STATS_KEY, statsKey);
 
                 final String title = stripTitle(page.getTitle());
                 final String content = page.getText();
                 resultMap.put("id", page.getId());
                 resultMap.put("title", title);
                 resultMap.put("content", content);
-                resultMap.put("encodedTitle", URLEncoder.encode(title, Constants.UTF_8));
+                resultMap.put("encodedTitle", TitleUtil.encode(title));
                 resultMap.put("digest", StringUtils.abbreviate(content, maxDigestLength));
                 resultMap.put("format", page.getFormat());
                 resultMap.put("model", page.getModel());
@@ -112,10 +625,14 @@ public class WikipediaDataStore extends AbstractDataStore {
                 final Map<String, Object> crawlingContext = new HashMap<>();
                 crawlingContext.put("doc", dataMap);
                 resultMap.put("crawlingContext", crawlingContext);
-                for (final Map.Entry<String, String> entry : scriptMap.entrySet()) {
-                    final Object convertValue = convertValue(scriptType, entry.getValue(), resultMap);
+                for (int i = 0; i < scripts.length; i++) {
+                    Object convertValue =
+                            scriptExpressions[i] != null ? scriptExpressions[i].evaluate(resultMap) : ScriptExpression.NOT_EVALUATED;
+                    if (convertValue == ScriptExpression.NOT_EVALUATED) {
+                        convertValue = convertValue(scriptType, scripts[i], resultMap);
+                    }
                     if (convertValue != null) {
-                        dataMap.put(entry.getKey(), convertValue);
+                        dataMap.put(scriptNames[i], convertValue);
                     }
                 }
 
@@ -130,13 +647,165 @@ public class WikipediaDataStore extends AbstractDataStore {
                 if (dataMap.get("url") instanceof final String url) {
                     statsKey.setUrl(url);
                 }
+            } catch (final Throwable t) {
+                data.failed = true;
+                data.aborted = !handleException(data, t);
+                crawlerStatsHelper.done(statsKey);
+            }
+            return data;
+        }
+
+        /**
+         * Stores the transformed page to the index.
+         *
+         * @param data the page data
+         * @return false if the crawling should be stopped
+         */
+        public boolean store(final PageData data) {
+            if (data.aborted) {
+                aborted = true;
+            }
+            if (aborted) {
+                // workers may still be storing the pages after the page which aborted the crawling
+                discard(data);
+                return false;
+            }
+            if (data.skipped) {
+                return true;
+            }
+            final int count = limit > 0 ? counter.incrementAndGet() : 0;
+            if (count > limit) {
+                // other workers reached the limit
+                discard(data);
+                return false;
+            }
+            if (!data.failed) {
+                if (bulkSize > 1) {
+                    if (!buffer(data)) {
+                        return false;
+                    }
+                } else if (!storeDocument(data)) {
+                    return false;
+                }
+            }
+
+            if (limit > 0 && count == limit) {
+                logger.info("Wikipedia crawler is stopped. ({} > {})", count, limit);
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Stores the buffered documents to the index.
+         * The documents buffered before this call are stored when it returns.
+         *
+         * @return false if the crawling should be stopped
+         */
+        public boolean flush() {
+            synchronized (flushLock) {
+                final List<PageData> batch;
+                synchronized (buffer) {
+                    if (buffer.isEmpty()) {
+                        return !aborted;
+                    }
+                    batch = new ArrayList<>(buffer);
+                    buffer.clear();
+                    bufferedContentSize = 0;
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    if (!storeDocument(batch.get(i))) {
+                        aborted = true;
+                        for (int j = i + 1; j < batch.size(); j++) {
+                            discard(batch.get(j));
+                        }
+                        return false;
+                    }
+                }
+                return !aborted;
+            }
+        }
+
+        /**
+         * Stops flushing on idle, and stores the buffered documents.
+         * A flush running on idle is not interrupted, and this call waits for it.
+         *
+         * @return false if the storing is aborted and buffered documents may be discarded
+         */
+        public boolean close() {
+            if (flushScheduler != null) {
+                flushScheduler.shutdown();
+            }
+            return flush();
+        }
+
+        private boolean buffer(final PageData data) {
+            final boolean full;
+            synchronized (buffer) {
+                buffer.add(data);
+                bufferedContentSize += getContentSize(data.dataMap);
+                lastBuffered = System.currentTimeMillis();
+                full = buffer.size() >= bulkSize || (bulkContentSize > 0 && bufferedContentSize >= bulkContentSize);
+            }
+            return !full || flush();
+        }
+
+        private boolean storeDocument(final PageData data) {
+            boolean stored = false;
+            try {
+                callback.store(data.params, data.dataMap);
+                crawlerStatsHelper.record(data.statsKey, StatsAction.FINISHED);
+                stored = true;
+            } catch (final Throwable t) {
+                if (!handleException(data, t)) {
+                    aborted = true;
+                    return false;
+                }
+            } finally {
+                crawlerStatsHelper.done(data.statsKey);
+            }
+            if (stored && pageStateStore != null) {
+                try {
+                    pageStateStore.update(data.page);
+                } catch (final IOException e) {
+                    throw new DataStoreException("Could not update the page state.", e);
+                }
+            }
+            return true;
+        }
+
+        private long getContentSize(final Map<String, Object> dataMap) {
+            long size = 0;
+            for (final Object value : dataMap.values()) {
+                if (value instanceof final CharSequence text) {
+                    size += text.length();
+                }
+            }
+            return size;
+        }
+
+        /**
+         * Finishes the statistics of a page which is transformed but not stored.
+         *
+         * @param data the page data
+         */
+        public void discard(final PageData data) {
+            if (!data.failed && !data.skipped) {
+                crawlerStatsHelper.done(data.statsKey);
+            }
+        }
 
-                callback.store(paramMap, dataMap);
-                crawlerStatsHelper.record(statsKey, StatsAction.FINISHED);
-            } catch (final CrawlingAccessException e) {
-                logger.warn("Crawling Access Exception at : {}", dataMap, e);
+        /**
+         * Records the failure of the page.
+         *
+         * @return false if the crawling is aborted
+         */
+        private boolean handleException(final PageData data, final Throwable e) {
+            final WikiPage page = data.page;
+            if (e instanceof final CrawlingAccessException cae) {
+                logger.warn("Crawling Access Exception at : {}", data.dataMap, cae);
 
-                Throwable target = e;
+                Throwable target = cae;
                 if (target instanceof final MultipleCrawlingAccessException ex) {
                     final Throwable[] causes = ex.getCauses();
                     if (causes.length > 0) {
@@ -153,53 +822,56 @@ public class WikipediaDataStore extends AbstractDataStore {
                 }
 
                 if (target instanceof final DataStoreCrawlingException dce && dce.aborted()) {
-                    throw new ParserStoppedException(page.getId());
+                    logger.info("Wikipedia crawler is aborted at {}.", page.getId());
+                    return false;
                 }
 
                 final FailureUrlService failureUrlService = ComponentUtil.getComponent(FailureUrlService.class);
                 failureUrlService.store(dataConfig, errorName, page.getId(), target);
-                crawlerStatsHelper.record(statsKey, StatsAction.ACCESS_EXCEPTION);
-            } catch (final Throwable t) {
-                logger.warn("Crawling Access Exception at : {}", dataMap, t);
+                crawlerStatsHelper.record(data.statsKey, StatsAction.ACCESS_EXCEPTION);
+            } else {
+                logger.warn("Crawling Access Exception at : {}", data.dataMap, e);
                 final FailureUrlService failureUrlService = ComponentUtil.getComponent(FailureUrlService.class);
-                failureUrlService.store(dataConfig, t.getClass().getCanonicalName(), page.getId(), t);
+                failureUrlService.store(dataConfig, e.getClass().getCanonicalName(), page.getId(), e);
 
                 if (readInterval > 0) {
                     sleep(readInterval);
                 }
-                crawlerStatsHelper.record(statsKey, StatsAction.EXCEPTION);
-            } finally {
-                crawlerStatsHelper.done(statsKey);
-            }
-
-            if (limit > 0 && counter.incrementAndGet() >= limit) {
-                logger.info("Wikipedia crawler is stopped. ({} > {})", counter.get(), limit);
-                throw new ParserStoppedException(page.getId());
-            }
-        });
-        try {
-            xmlParser.parse();
-        } catch (final ParserStoppedException e) {
-            if (logger.isDebugEnabled()) {
-                logger.debug("Wikipedia crawler is stopped at " + e.getMessage(), e);
+                crawlerStatsHelper.record(data.statsKey, StatsAction.EXCEPTION);
             }
+            return true;
         }
     }
 
-    private URL getWikipediaUrl(final DataStoreParams paramMap) {
-        try {
-            return new URL(paramMap.getAsString("url", DEFAULT_WIKIPEDIA_URL));
-        } catch (final MalformedURLException e) {
-            throw new DataStoreException("Could not parse Wikipedia URL.", e);
+    /**
+     * A page and its document passed from {@link PageProcessor#transform(WikiPage)} to {@link PageProcessor#store(PageData)}.
+     */
+    protected static class PageData {
+
+        final WikiPage page;
+
+        final DataStoreParams params;
+
+        final StatsKeyObject statsKey;
+
+        final Map<String, Object> dataMap;
+
+        boolean failed;
+
+        boolean aborted;
+
+        /** True if the page is not changed since the last crawl. */
+        boolean skipped;
+
+        PageData(final WikiPage page, final DataStoreParams params, final StatsKeyObject statsKey, final Map<String, Object> dataMap) {
+            this.page = page;
+            this.params = params;
+            this.statsKey = statsKey;
+            this.dataMap = dataMap;
         }
     }
 
     private String stripTitle(final String title) {
-        final StringBuilder sb = new StringBuilder();
-        sb.append(title);
-        while (sb.length() > 0 && (sb.charAt(sb.length() - 1) == '\n' || (sb.charAt(sb.length() - 1) == ' '))) {
-            sb.deleteCharAt(sb.length() - 1);
-        }
-        return sb.toString();
+        return title != null ? TitleUtil.strip(title) : StringUtils.EMPTY;
     }
 }
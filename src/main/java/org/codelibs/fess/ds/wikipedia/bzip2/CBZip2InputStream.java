@@ -17,6 +17,7 @@ package org.codelibs.fess.ds.wikipedia.bzip2;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
 /**
  * An input stream that decompresses from the BZip2 format (without the file
@@ -74,14 +75,20 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
 
     private boolean blockRandomised;
 
-    private int bsBuff;
+    /**
+     * The bit buffer. The lower bsLive bits are valid.
+     */
+    private long bsBuff;
     private int bsLive;
+    private int nSelectors;
     private final CRC crc = new CRC();
 
     private int nInUse;
 
     private InputStream in;
 
+    private final boolean decompressConcatenated;
+
     private int currentChar = -1;
 
     private static final int EOF = 0;
@@ -93,6 +100,17 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
     private static final int NO_RAND_PART_B_STATE = 6;
     private static final int NO_RAND_PART_C_STATE = 7;
 
+    /**
+     * Maximum length of a Huffman code accepted by the decoder.
+     */
+    private static final int MAX_DECODE_CODE_LEN = 20;
+
+    /**
+     * Number of bits resolved by a single lookup of the Huffman decoding table.
+     */
+    private static final int HUFFMAN_LOOKUP_BITS = 10;
+    private static final int HUFFMAN_LOOKUP_MASK = (1 << HUFFMAN_LOOKUP_BITS) - 1;
+
     private int currentState = START_BLOCK_STATE;
 
     private int storedBlockCRC, storedCombinedCRC;
@@ -130,7 +148,25 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
      * @throws NullPointerException if in == null
      */
     public CBZip2InputStream(final InputStream in) throws IOException {
+        this(in, false);
+    }
+
+    /**
+     * Constructs a new CBZip2InputStream which decompresses bytes read from
+     * the specified stream.
+     * <p>If decompressConcatenated is true, further BZip2 streams following
+     * the end-of-stream marker are decoded as well, as found in
+     * pages-articles-multistream dumps. Each following stream is expected to
+     * start with the full "BZh" header.</p>
+     *
+     * @param in InputStream to read from
+     * @param decompressConcatenated true to continue with concatenated streams
+     * @throws java.io.IOException  if the stream content is malformed or an I/O error occurs.
+     * @throws NullPointerException if in == null
+     */
+    public CBZip2InputStream(final InputStream in, final boolean decompressConcatenated) throws IOException {
         this.in = in;
+        this.decompressConcatenated = decompressConcatenated;
         init();
     }
 
@@ -156,17 +192,125 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
         if (this.in == null) {
             throw new IOException("stream closed");
         }
+        if (len == 0) {
+            return 0;
+        }
 
         final int hi = offs + len;
         int destOffs = offs;
-        for (int b; (destOffs < hi) && ((b = read0()) >= 0);) {
-            dest[destOffs] = (byte) b;
-            destOffs++;
+        while (destOffs < hi) {
+            final int state = this.currentState;
+            if (state == NO_RAND_PART_B_STATE || state == NO_RAND_PART_C_STATE) {
+                destOffs = readNoRand(dest, destOffs, hi);
+            } else {
+                final int b = read0();
+                if (b < 0) {
+                    break;
+                }
+                dest[destOffs] = (byte) b;
+                destOffs++;
+            }
         }
 
         return (destOffs == offs) ? -1 : (destOffs - offs);
     }
 
+    /**
+     * Bulk version of read0() for non-randomised blocks.
+     * Emits the pending char and the following output of the current block
+     * directly into dest, writing runs at once, and updates the CRC over the
+     * written range afterwards instead of per byte.
+     * Called by read(byte[], int, int) in NO_RAND_PART_B_STATE or
+     * NO_RAND_PART_C_STATE exclusively.
+     */
+    private int readNoRand(final byte[] dest, final int offs, final int hi) throws IOException {
+        final int[] tt = this.data.tt;
+        final int lastShadow = this.last;
+        int state = this.currentState;
+        int tPos = this.su_tPos;
+        int i2 = this.su_i2;
+        int count = this.su_count;
+        int ch2 = this.su_ch2;
+        int chPrev = this.su_chPrev;
+        int z = this.su_z;
+        int j2 = this.su_j2;
+        int ch = -1;
+
+        // the pending char is already added to the CRC
+        int destOffs = offs;
+        dest[destOffs++] = (byte) this.currentChar;
+        final int crcFrom = destOffs;
+
+        boolean endOfBlock = false;
+        for (;;) {
+            if (state == NO_RAND_PART_C_STATE) {
+                if (j2 < z) {
+                    final int n = Math.min(z - j2, hi - destOffs);
+                    if (n > 0) {
+                        final byte b = (byte) ch2;
+                        for (int i = destOffs + n; --i >= destOffs;) {
+                            dest[i] = b;
+                        }
+                        destOffs += n;
+                        j2 += n;
+                        continue;
+                    }
+                    ch = ch2;
+                    j2++;
+                    break;
+                }
+                i2++;
+                count = 0;
+            } else if (ch2 != chPrev) {
+                count = 1;
+            } else if (++count >= 4) {
+                final int e = tt[tPos];
+                z = e & 0xff;
+                tPos = e >>> 8;
+                j2 = 0;
+                state = NO_RAND_PART_C_STATE;
+                continue;
+            }
+
+            if (i2 > lastShadow) {
+                endOfBlock = true;
+                break;
+            }
+            chPrev = ch2;
+            final int e = tt[tPos];
+            ch2 = e & 0xff;
+            tPos = e >>> 8;
+            i2++;
+            state = NO_RAND_PART_B_STATE;
+            if (destOffs >= hi) {
+                ch = ch2;
+                break;
+            }
+            dest[destOffs++] = (byte) ch2;
+        }
+
+        this.su_tPos = tPos;
+        this.su_i2 = i2;
+        this.su_count = count;
+        this.su_ch2 = ch2;
+        this.su_chPrev = chPrev;
+        this.su_z = (char) z;
+        this.su_j2 = j2;
+        this.crc.updateCRC(dest, crcFrom, destOffs - crcFrom);
+
+        if (endOfBlock) {
+            this.currentState = NO_RAND_PART_A_STATE;
+            endBlock();
+            initBlock();
+            setupBlock();
+        } else {
+            this.currentChar = ch;
+            this.currentState = state;
+            this.crc.updateCRC(ch);
+        }
+        return destOffs;
+    }
+
     private int read0() throws IOException {
         final int retChar = this.currentChar;
 
@@ -218,15 +362,40 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
             throw new IOException("Stream is not BZip2 formatted: expected 'h'" + " as first byte but got '" + (char) magic2 + "'");
         }
 
+        initBlockSize();
+        initBlock();
+        setupBlock();
+    }
+
+    private void initBlockSize() throws IOException {
         final int blockSize = this.in.read();
         if ((blockSize < '1') || (blockSize > '9')) {
             throw new IOException("Stream is not BZip2 formatted: illegal " + "blocksize " + (char) blockSize);
         }
 
         this.blockSize100k = blockSize - '0';
+    }
 
-        initBlock();
-        setupBlock();
+    /**
+     * Reads the header of a concatenated stream.
+     * Called by complete() exclusively.
+     *
+     * @return true if a further stream follows
+     */
+    private boolean initNextStream() throws IOException {
+        final int magic0 = this.in.read();
+        if (magic0 < 0) {
+            return false;
+        }
+        if (magic0 != 'B' || this.in.read() != 'Z' || this.in.read() != 'h') {
+            throw new IOException("Stream is not BZip2 formatted: bad concatenated stream header");
+        }
+        initBlockSize();
+        // the previous stream is padded to a byte boundary
+        this.bsBuff = 0;
+        this.bsLive = 0;
+        this.computedCombinedCRC = 0;
+        return true;
     }
 
     private void initBlock() throws IOException {
@@ -293,6 +462,10 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
         if (this.storedCombinedCRC != this.computedCombinedCRC) {
             reportCRCError();
         }
+
+        if (this.decompressConcatenated && initNextStream()) {
+            initBlock();
+        }
     }
 
     @Override
@@ -312,7 +485,7 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
 
     private int bsR(final int n) throws IOException {
         int bsLiveShadow = this.bsLive;
-        int bsBuffShadow = this.bsBuff;
+        long bsBuffShadow = this.bsBuff;
 
         if (bsLiveShadow < n) {
             final InputStream inShadow = this.in;
@@ -331,12 +504,12 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
         }
 
         this.bsLive = bsLiveShadow - n;
-        return (bsBuffShadow >> (bsLiveShadow - n)) & ((1 << n) - 1);
+        return (int) (bsBuffShadow >>> (bsLiveShadow - n)) & ((1 << n) - 1);
     }
 
     private boolean bsGetBit() throws IOException {
         int bsLiveShadow = this.bsLive;
-        int bsBuffShadow = this.bsBuff;
+        long bsBuffShadow = this.bsBuff;
 
         if (bsLiveShadow < 1) {
             final int thech = this.in.read();
@@ -351,7 +524,7 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
         }
 
         this.bsLive = bsLiveShadow - 1;
-        return ((bsBuffShadow >> (bsLiveShadow - 1)) & 1) != 0;
+        return ((bsBuffShadow >>> (bsLiveShadow - 1)) & 1) != 0;
     }
 
     private char bsGetUByte() throws IOException {
@@ -439,14 +612,22 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
 
         /* Now the selectors */
         final int nGroups = bsR(3);
-        final int nSelectors = bsR(15);
+        final int nSelectorsRead = bsR(15);
+        if (nGroups < 2 || nGroups > N_GROUPS || nSelectorsRead < 1) {
+            throw new IOException("invalid selectors");
+        }
+        // selectors beyond MAX_SELECTORS are never used
+        final int nSelectors = Math.min(nSelectorsRead, MAX_SELECTORS);
+        this.nSelectors = nSelectors;
 
-        for (int i = 0; i < nSelectors; i++) {
+        for (int i = 0; i < nSelectorsRead; i++) {
             int j = 0;
             while (bsGetBit()) {
                 j++;
             }
-            selectorMtf[i] = (byte) j;
+            if (i < nSelectors) {
+                selectorMtf[i] = (byte) j;
+            }
         }
 
         /* Undo the MTF values for the selectors. */
@@ -456,6 +637,9 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
 
         for (int i = 0; i < nSelectors; i++) {
             int v = selectorMtf[i] & 0xff;
+            if (v >= nGroups) {
+                throw new IOException("invalid selector");
+            }
             final byte tmp = pos[v];
             while (v > 0) {
                 // nearly all times v is zero, 4 in most other cases
@@ -476,6 +660,9 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
                 while (bsGetBit()) {
                     curr += bsGetBit() ? -1 : 1;
                 }
+                if (curr < 1 || curr > MAX_DECODE_CODE_LEN) {
+                    throw new IOException("invalid code length " + curr);
+                }
                 len_t[i] = (char) curr;
             }
         }
@@ -491,9 +678,11 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
         final Data dataShadow = this.data;
         final char[][] len = dataShadow.temp_charArray2d;
         final int[] minLens = dataShadow.minLens;
+        final int[] maxLens = dataShadow.maxLens;
         final int[][] limit = dataShadow.limit;
         final int[][] base = dataShadow.base;
         final int[][] perm = dataShadow.perm;
+        final int[][] lookup = dataShadow.lookup;
 
         for (int t = 0; t < nGroups; t++) {
             int minLen = 32;
@@ -509,7 +698,32 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
                 }
             }
             hbCreateDecodeTables(limit[t], base[t], perm[t], len[t], minLen, maxLen, alphaSize);
+            hbCreateLookupTable(lookup[t], len[t], minLen, maxLen, alphaSize);
             minLens[t] = minLen;
+            maxLens[t] = maxLen;
+        }
+    }
+
+    /**
+     * Fills the first-level lookup table of the canonical Huffman code.
+     * An entry holds (symbol &lt;&lt; 8) | length for codes of up to
+     * HUFFMAN_LOOKUP_BITS bits, or 0 if the code is longer.
+     * Called by createHuffmanDecodingTables() exclusively.
+     */
+    private static void hbCreateLookupTable(final int[] lookup, final char[] length, final int minLen, final int maxLen,
+            final int alphaSize) {
+        Arrays.fill(lookup, 0);
+        for (int i = minLen, code = 0; i <= maxLen; i++) {
+            for (int j = 0; j < alphaSize; j++) {
+                if (length[j] == i) {
+                    if (i <= HUFFMAN_LOOKUP_BITS && code < (1 << i)) {
+                        final int shift = HUFFMAN_LOOKUP_BITS - i;
+                        Arrays.fill(lookup, code << shift, (code + 1) << shift, (j << 8) | i);
+                    }
+                    code++;
+                }
+            }
+            code <<= 1;
         }
     }
 
@@ -525,10 +739,13 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
         final byte[] seqToUnseq = dataShadow.seqToUnseq;
         final char[] yy = dataShadow.getAndMoveToFrontDecode_yy;
         final int[] minLens = dataShadow.minLens;
+        final int[] maxLens = dataShadow.maxLens;
         final int[][] limit = dataShadow.limit;
         final int[][] base = dataShadow.base;
         final int[][] perm = dataShadow.perm;
+        final int[][] lookup = dataShadow.lookup;
         final int limitLast = this.blockSize100k * 100000;
+        final int nSelectors = this.nSelectors;
 
         /*
           Setting up the unzftab entries here is not strictly
@@ -541,194 +758,137 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
             unzftab[i] = 0;
         }
 
-        int groupNo = 0;
-        int groupPos = G_SIZE - 1;
+        int groupNo = -1;
+        int groupPos = 0;
         final int eob = this.nInUse + 1;
-        int nextSym = getAndMoveToFrontDecode0(0);
-        int bsBuffShadow = this.bsBuff;
+        long bsBuffShadow = this.bsBuff;
         int bsLiveShadow = this.bsLive;
         int lastShadow = -1;
-        int zt = selector[groupNo] & 0xff;
-        int[] base_zt = base[zt];
-        int[] limit_zt = limit[zt];
-        int[] perm_zt = perm[zt];
-        int minLens_zt = minLens[zt];
-
-        while (nextSym != eob) {
-            if ((nextSym == RUNA) || (nextSym == RUNB)) {
-                int s = -1;
-
-                for (int n = 1; true; n <<= 1) {
-                    if (nextSym == RUNA) {
-                        s += n;
-                    } else if (nextSym == RUNB) {
-                        s += n << 1;
-                    } else {
-                        break;
-                    }
-
-                    if (groupPos == 0) {
-                        groupPos = G_SIZE - 1;
-                        groupNo++;
-                        zt = selector[groupNo] & 0xff;
-                        base_zt = base[zt];
-                        limit_zt = limit[zt];
-                        perm_zt = perm[zt];
-                        minLens_zt = minLens[zt];
-                    } else {
-                        groupPos--;
-                    }
-
-                    int zn = minLens_zt;
+        int[] base_zt = null;
+        int[] limit_zt = null;
+        int[] perm_zt = null;
+        int[] lookup_zt = null;
+        int minLens_zt = 0;
+        int maxLens_zt = 0;
+
+        // pending run of RUNA/RUNB symbols
+        int s = -1;
+        int n = 1;
+
+        for (;;) {
+            if (groupPos == 0) {
+                groupPos = G_SIZE;
+                groupNo++;
+                if (groupNo >= nSelectors) {
+                    throw new IOException("selector overrun");
+                }
+                final int zt = selector[groupNo] & 0xff;
+                base_zt = base[zt];
+                limit_zt = limit[zt];
+                perm_zt = perm[zt];
+                lookup_zt = lookup[zt];
+                minLens_zt = minLens[zt];
+                maxLens_zt = maxLens[zt];
+            }
+            groupPos--;
 
-                    // Inlined:
-                    // int zvec = bsR(zn);
-                    while (bsLiveShadow < zn) {
-                        final int thech = inShadow.read();
-                        if (thech >= 0) {
-                            bsBuffShadow = (bsBuffShadow << 8) | thech;
-                            bsLiveShadow += 8;
-                            continue;
-                        }
+            if (bsLiveShadow < MAX_DECODE_CODE_LEN) {
+                // a block is followed by at least 80 bits of a block or stream trailer
+                do {
+                    final int thech = inShadow.read();
+                    if (thech < 0) {
                         throw new IOException("unexpected end of stream");
                     }
-                    int zvec = (bsBuffShadow >> (bsLiveShadow - zn)) & ((1 << zn) - 1);
-                    bsLiveShadow -= zn;
-
-                    while (zvec > limit_zt[zn]) {
-                        zn++;
-                        while (bsLiveShadow < 1) {
-                            final int thech = inShadow.read();
-                            if (thech >= 0) {
-                                bsBuffShadow = (bsBuffShadow << 8) | thech;
-                                bsLiveShadow += 8;
-                                continue;
-                            }
-                            throw new IOException("unexpected end of stream");
-                        }
-                        bsLiveShadow--;
-                        zvec = (zvec << 1) | ((bsBuffShadow >> bsLiveShadow) & 1);
-                    }
-                    nextSym = perm_zt[zvec - base_zt[zn]];
-                }
-
-                final byte ch = seqToUnseq[yy[0]];
-                unzftab[ch & 0xff] += s + 1;
+                    bsBuffShadow = (bsBuffShadow << 8) | thech;
+                    bsLiveShadow += 8;
+                } while (bsLiveShadow <= 56);
+            }
 
-                while (s-- >= 0) {
-                    lastShadow++;
-                    ll8[lastShadow] = ch;
+            final int nextSym;
+            final int entry = lookup_zt[(int) (bsBuffShadow >>> (bsLiveShadow - HUFFMAN_LOOKUP_BITS)) & HUFFMAN_LOOKUP_MASK];
+            if (entry != 0) {
+                bsLiveShadow -= entry & 0xff;
+                nextSym = entry >>> 8;
+            } else {
+                // codes longer than the lookup table
+                int zn = Math.max(minLens_zt, HUFFMAN_LOOKUP_BITS + 1);
+                int zvec = (int) (bsBuffShadow >>> (bsLiveShadow - zn)) & ((1 << zn) - 1);
+                while (zn <= maxLens_zt && zvec > limit_zt[zn]) {
+                    zn++;
+                    zvec = (int) (bsBuffShadow >>> (bsLiveShadow - zn)) & ((1 << zn) - 1);
+                }
+                final int permPos = zvec - base_zt[zn];
+                if (zn > maxLens_zt || permPos < 0 || permPos >= MAX_ALPHA_SIZE) {
+                    throw new IOException("invalid huffman code");
                 }
+                bsLiveShadow -= zn;
+                nextSym = perm_zt[permPos];
+            }
 
-                if (lastShadow >= limitLast) {
+            if (nextSym == RUNA) {
+                s += n;
+                n <<= 1;
+                if (n > limitLast) {
                     throw new IOException("block overrun");
                 }
-            } else {
-                lastShadow++;
-                if (lastShadow >= limitLast) {
+                continue;
+            }
+            if (nextSym == RUNB) {
+                s += n << 1;
+                n <<= 1;
+                if (n > limitLast) {
                     throw new IOException("block overrun");
                 }
+                continue;
+            }
 
-                final char tmp = yy[nextSym - 1];
-                unzftab[seqToUnseq[tmp] & 0xff]++;
-                ll8[lastShadow] = seqToUnseq[tmp];
-
-                /*
-                  This loop is hammered during decompression,
-                  hence avoid native method call overhead of
-                  System.arraycopy for very small ranges to copy.
-                */
-                if (nextSym <= 16) {
-                    for (int j = nextSym - 1; j > 0;) {
-                        yy[j] = yy[--j];
-                    }
-                } else {
-                    System.arraycopy(yy, 0, yy, 1, nextSym - 1);
-                }
-
-                yy[0] = tmp;
-
-                if (groupPos == 0) {
-                    groupPos = G_SIZE - 1;
-                    groupNo++;
-                    zt = selector[groupNo] & 0xff;
-                    base_zt = base[zt];
-                    limit_zt = limit[zt];
-                    perm_zt = perm[zt];
-                    minLens_zt = minLens[zt];
-                } else {
-                    groupPos--;
-                }
-
-                int zn = minLens_zt;
-
-                // Inlined:
-                // int zvec = bsR(zn);
-                while (bsLiveShadow < zn) {
-                    final int thech = inShadow.read();
-                    if (thech >= 0) {
-                        bsBuffShadow = (bsBuffShadow << 8) | thech;
-                        bsLiveShadow += 8;
-                        continue;
-                    }
-                    throw new IOException("unexpected end of stream");
+            if (s >= 0) {
+                if (lastShadow + s + 1 >= limitLast) {
+                    throw new IOException("block overrun");
                 }
-                int zvec = (bsBuffShadow >> (bsLiveShadow - zn)) & ((1 << zn) - 1);
-                bsLiveShadow -= zn;
+                final byte ch = seqToUnseq[yy[0]];
+                unzftab[ch & 0xff] += s + 1;
 
-                while (zvec > limit_zt[zn]) {
-                    zn++;
-                    while (bsLiveShadow < 1) {
-                        final int thech = inShadow.read();
-                        if (thech >= 0) {
-                            bsBuffShadow = (bsBuffShadow << 8) | thech;
-                            bsLiveShadow += 8;
-                            continue;
-                        }
-                        throw new IOException("unexpected end of stream");
-                    }
-                    bsLiveShadow--;
-                    zvec = (zvec << 1) | ((bsBuffShadow >> bsLiveShadow) & 1);
+                while (s-- >= 0) {
+                    lastShadow++;
+                    ll8[lastShadow] = ch;
                 }
-                nextSym = perm_zt[zvec - base_zt[zn]];
+                s = -1;
+                n = 1;
             }
-        }
-
-        this.last = lastShadow;
-        this.bsLive = bsLiveShadow;
-        this.bsBuff = bsBuffShadow;
-    }
 
-    private int getAndMoveToFrontDecode0(final int groupNo) throws IOException {
-        final InputStream inShadow = this.in;
-        final Data dataShadow = this.data;
-        final int zt = dataShadow.selector[groupNo] & 0xff;
-        final int[] limit_zt = dataShadow.limit[zt];
-        int zn = dataShadow.minLens[zt];
-        int zvec = bsR(zn);
-        int bsLiveShadow = this.bsLive;
-        int bsBuffShadow = this.bsBuff;
+            if (nextSym == eob) {
+                break;
+            }
 
-        while (zvec > limit_zt[zn]) {
-            zn++;
-            while (bsLiveShadow < 1) {
-                final int thech = inShadow.read();
+            lastShadow++;
+            if (lastShadow >= limitLast) {
+                throw new IOException("block overrun");
+            }
 
-                if (thech >= 0) {
-                    bsBuffShadow = (bsBuffShadow << 8) | thech;
-                    bsLiveShadow += 8;
-                    continue;
+            final char tmp = yy[nextSym - 1];
+            unzftab[seqToUnseq[tmp] & 0xff]++;
+            ll8[lastShadow] = seqToUnseq[tmp];
+
+            /*
+              This loop is hammered during decompression,
+              hence avoid native method call overhead of
+              System.arraycopy for very small ranges to copy.
+            */
+            if (nextSym <= 16) {
+                for (int j = nextSym - 1; j > 0;) {
+                    yy[j] = yy[--j];
                 }
-                throw new IOException("unexpected end of stream");
+            } else {
+                System.arraycopy(yy, 0, yy, 1, nextSym - 1);
             }
-            bsLiveShadow--;
-            zvec = (zvec << 1) | ((bsBuffShadow >> bsLiveShadow) & 1);
+
+            yy[0] = tmp;
         }
 
+        this.last = lastShadow;
         this.bsLive = bsLiveShadow;
         this.bsBuff = bsBuffShadow;
-
-        return dataShadow.perm[zt][zvec - dataShadow.base[zt][zn]];
     }
 
     private void setupBlock() throws IOException {
@@ -751,11 +911,19 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
             tt[cftab[ll8[i] & 0xff]++] = i;
         }
 
+        /*
+          Keep the char in the low 8 bits of tt, so that the output
+          loop needs a single random access per char.
+        */
+        for (int i = 0, lastShadow = this.last; i <= lastShadow; i++) {
+            tt[i] = (tt[i] << 8) | (ll8[i] & 0xff);
+        }
+
         if ((this.origPtr < 0) || (this.origPtr >= tt.length)) {
             throw new IOException("stream corrupted");
         }
 
-        this.su_tPos = tt[this.origPtr];
+        this.su_tPos = tt[this.origPtr] >>> 8;
         this.su_count = 0;
         this.su_i2 = 0;
         this.su_ch2 = 256; /* not a char and not EOF */
@@ -772,8 +940,9 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
     private void setupRandPartA() throws IOException {
         if (this.su_i2 <= this.last) {
             this.su_chPrev = this.su_ch2;
-            int su_ch2Shadow = this.data.ll8[this.su_tPos] & 0xff;
-            this.su_tPos = this.data.tt[this.su_tPos];
+            final int tt_tPos = this.data.tt[this.su_tPos];
+            int su_ch2Shadow = tt_tPos & 0xff;
+            this.su_tPos = tt_tPos >>> 8;
             if (this.su_rNToGo == 0) {
                 this.su_rNToGo = BZip2Constants.rNums[this.su_rTPos] - 1;
                 if (++this.su_rTPos == 512) {
@@ -797,9 +966,10 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
     private void setupNoRandPartA() throws IOException {
         if (this.su_i2 <= this.last) {
             this.su_chPrev = this.su_ch2;
-            final int su_ch2Shadow = this.data.ll8[this.su_tPos] & 0xff;
+            final int tt_tPos = this.data.tt[this.su_tPos];
+            final int su_ch2Shadow = tt_tPos & 0xff;
             this.su_ch2 = su_ch2Shadow;
-            this.su_tPos = this.data.tt[this.su_tPos];
+            this.su_tPos = tt_tPos >>> 8;
             this.su_i2++;
             this.currentChar = su_ch2Shadow;
             this.currentState = NO_RAND_PART_B_STATE;
@@ -818,8 +988,9 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
             this.su_count = 1;
             setupRandPartA();
         } else if (++this.su_count >= 4) {
-            this.su_z = (char) (this.data.ll8[this.su_tPos] & 0xff);
-            this.su_tPos = this.data.tt[this.su_tPos];
+            final int tt_tPos = this.data.tt[this.su_tPos];
+            this.su_z = (char) (tt_tPos & 0xff);
+            this.su_tPos = tt_tPos >>> 8;
             if (this.su_rNToGo == 0) {
                 this.su_rNToGo = BZip2Constants.rNums[this.su_rTPos] - 1;
                 if (++this.su_rTPos == 512) {
@@ -858,8 +1029,9 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
             this.su_count = 1;
             setupNoRandPartA();
         } else if (++this.su_count >= 4) {
-            this.su_z = (char) (this.data.ll8[this.su_tPos] & 0xff);
-            this.su_tPos = this.data.tt[this.su_tPos];
+            final int tt_tPos = this.data.tt[this.su_tPos];
+            this.su_z = (char) (tt_tPos & 0xff);
+            this.su_tPos = tt_tPos >>> 8;
             this.su_j2 = 0;
             setupNoRandPartC();
         } else {
@@ -900,18 +1072,20 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
         final int[][] base = new int[N_GROUPS][MAX_ALPHA_SIZE]; //     6192 byte
         final int[][] perm = new int[N_GROUPS][MAX_ALPHA_SIZE]; //     6192 byte
         final int[] minLens = new int[N_GROUPS]; //       24 byte
+        final int[] maxLens = new int[N_GROUPS]; //       24 byte
+        final int[][] lookup = new int[N_GROUPS][1 << HUFFMAN_LOOKUP_BITS]; //    24576 byte
 
         final int[] cftab = new int[257]; //     1028 byte
         final char[] getAndMoveToFrontDecode_yy = new char[256]; //      512 byte
         final char[][] temp_charArray2d = new char[N_GROUPS][MAX_ALPHA_SIZE]; //     3096 byte
         final byte[] recvDecodingTables_pos = new byte[N_GROUPS]; //        6 byte
         //---------------
-        //    60798 byte
+        //    85398 byte
 
         int[] tt; //  3600000 byte
         byte[] ll8; //   900000 byte
         //---------------
-        //  4560782 byte
+        //  4585382 byte
         //===============
 
         Data(final int blockSize100k) {
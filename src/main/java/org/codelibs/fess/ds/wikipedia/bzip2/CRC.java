@@ -85,5 +85,13 @@ final class CRC {
         this.globalCrc = globalCrcShadow;
     }
 
+    void updateCRC(final byte[] buf, final int offs, final int len) {
+        int globalCrcShadow = this.globalCrc;
+        for (int i = offs, hi = offs + len; i < hi; i++) {
+            globalCrcShadow = (globalCrcShadow << 8) ^ crc32Table[((globalCrcShadow >>> 24) ^ buf[i]) & 0xff];
+        }
+        this.globalCrc = globalCrcShadow;
+    }
+
     int globalCrc;
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.bzip2;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An input stream that decompresses a sequence of concatenated BZip2 streams
+ * (with the "BZ" file header chars) in parallel.
+ * <p>The compressed source is read sequentially and cut at the given stream
+ * offsets, as recorded in the index file of pages-articles-multistream dumps.
+ * Each stream is decompressed on a worker thread and the output is returned
+ * in the original order.</p>
+ * <p>Instances of this class are not threadsafe.</p>
+ */
+public class MultiStreamBZip2InputStream extends InputStream {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private InputStream in;
+
+    private final long[] offsets;
+
+    private final ExecutorService executorService;
+
+    private final int maxPendingStreams;
+
+    private final Deque<Future<byte[]>> pendingStreams = new ArrayDeque<>();
+
+    /** Index in offsets[] of the next stream to be read from the source. */
+    private int nextOffsetIndex = 0;
+
+    private long position = 0;
+
+    private boolean sourceExhausted = false;
+
+    private byte[] buffer = new byte[0];
+
+    private int bufferPos = 0;
+
+    /**
+     * Constructs a new MultiStreamBZip2InputStream.
+     *
+     * @param in the compressed source, positioned at the first stream
+     * @param offsets the ascending byte offsets of the streams in the source
+     * @param threadSize the number of decompression threads
+     */
+    public MultiStreamBZip2InputStream(final InputStream in, final long[] offsets, final int threadSize) {
+        this(in, 0, offsets, threadSize);
+    }
+
+    /**
+     * Constructs a new MultiStreamBZip2InputStream.
+     *
+     * @param in the compressed source
+     * @param startOffset the byte offset of the source's current position
+     * @param offsets the ascending byte offsets of the streams in the source
+     * @param threadSize the number of decompression threads
+     */
+    public MultiStreamBZip2InputStream(final InputStream in, final long startOffset, final long[] offsets, final int threadSize) {
+        if (threadSize < 1) {
+            throw new IllegalArgumentException("threadSize(" + threadSize + ") < 1.");
+        }
+        this.in = in;
+        this.offsets = offsets;
+        this.position = startOffset;
+        this.maxPendingStreams = threadSize * 2;
+        this.executorService = Executors.newFixedThreadPool(threadSize, r -> {
+            final Thread thread = new Thread(r, "bzip2-decompressor-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        while (nextOffsetIndex < offsets.length && offsets[nextOffsetIndex] <= startOffset) {
+            nextOffsetIndex++;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fillBuffer()) {
+            return -1;
+        }
+        return buffer[bufferPos++] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] dest, final int offs, final int len) throws IOException {
+        if (offs < 0 || len < 0 || offs + len > dest.length) {
+            throw new IndexOutOfBoundsException("offs(" + offs + "), len(" + len + "), dest.length(" + dest.length + ").");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!fillBuffer()) {
+            return -1;
+        }
+        final int size = Math.min(len, buffer.length - bufferPos);
+        System.arraycopy(buffer, bufferPos, dest, offs, size);
+        bufferPos += size;
+        return size;
+    }
+
+    private boolean fillBuffer() throws IOException {
+        if (this.in == null) {
+            throw new IOException("stream closed");
+        }
+        while (bufferPos >= buffer.length) {
+            submitStreams();
+            final Future<byte[]> future = pendingStreams.poll();
+            if (future == null) {
+                return false;
+            }
+            try {
+                buffer = future.get();
+                bufferPos = 0;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while decompressing.", e);
+            } catch (final ExecutionException e) {
+                throw new IOException("Failed to decompress a stream.", e.getCause());
+            }
+        }
+        return true;
+    }
+
+    private void submitStreams() throws IOException {
+        while (!sourceExhausted && pendingStreams.size() < maxPendingStreams) {
+            final byte[] compressed = readNextStream();
+            if (compressed.length == 0) {
+                sourceExhausted = true;
+                break;
+            }
+            pendingStreams.add(executorService.submit(() -> decompress(compressed)));
+        }
+    }
+
+    private byte[] readNextStream() throws IOException {
+        while (nextOffsetIndex < offsets.length) {
+            final long size = offsets[nextOffsetIndex++] - position;
+            if (size <= 0) {
+                // duplicated offset or the stream starts at the current position
+                continue;
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Too large stream: " + size + " bytes at " + position);
+            }
+            final byte[] bytes = in.readNBytes((int) size);
+            if (bytes.length < size) {
+                throw new IOException("unexpected end of stream at " + (position + bytes.length));
+            }
+            position += bytes.length;
+            return bytes;
+        }
+        final byte[] bytes = in.readAllBytes();
+        position += bytes.length;
+        return bytes;
+    }
+
+    private static byte[] decompress(final byte[] compressed) throws IOException {
+        if (compressed.length < 2 || compressed[0] != 'B' || compressed[1] != 'Z') {
+            throw new IOException("Stream is not BZip2 formatted: expected 'BZ' header.");
+        }
+        try (CBZip2InputStream bzip2In = new CBZip2InputStream(new ByteArrayInputStream(compressed, 2, compressed.length - 2), true)) {
+            return bzip2In.readAllBytes();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        final InputStream inShadow = this.in;
+        if (inShadow != null) {
+            try {
+                inShadow.close();
+            } finally {
+                this.in = null;
+                this.buffer = new byte[0];
+                pendingStreams.forEach(f -> f.cancel(true));
+                pendingStreams.clear();
+                executorService.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,529 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.bzip2;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An input stream that decompresses from the BZip2 format (without the file
+ * header chars) by decoding the blocks of the stream in parallel.
+ * <p>The compressed source is scanned at bit granularity for the 48-bit block
+ * header magic 0x314159265359 and the end-of-stream magic 0x177245385090.
+ * Each block is decoded on a worker thread by {@link CBZip2InputStream} and
+ * the output is returned in the original order. Since a magic number may also
+ * occur inside compressed data by chance, a block which fails to decode is
+ * merged with the following one and decoded again.</p>
+ * <p>Concatenated streams are decoded as well. Bytes after the last stream
+ * which are not the header of another stream are ignored.</p>
+ * <p>Instances of this class are not threadsafe.</p>
+ */
+public class ParallelBZip2InputStream extends InputStream {
+
+    private static final long BLOCK_MAGIC = 0x314159265359L;
+
+    private static final long EOS_MAGIC = 0x177245385090L;
+
+    private static final long MAGIC_MASK = 0xffffffffffffL;
+
+    private static final int MAGIC_BITS = 48;
+
+    private static final int CRC_BITS = 32;
+
+    /** The number of candidate blocks to be merged before giving up. */
+    private static final int MAX_MERGED_BLOCKS = 4;
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private InputStream in;
+
+    private final ExecutorService executorService;
+
+    private final int maxPendingBlocks;
+
+    private final Deque<Segment> pendingSegments = new ArrayDeque<>();
+
+    /** The number of blocks in pendingSegments, excluding the end-of-stream markers. */
+    private int pendingBlocks = 0;
+
+    private final byte[] readBuffer = new byte[8192];
+
+    private int readBufferPos = 0;
+
+    private int readBufferLen = 0;
+
+    /** Bytes pushed back to the source, read in reverse order. */
+    private final byte[] unreadBytes = new byte[16];
+
+    private int unreadLen = 0;
+
+    /** Bytes of the block being scanned. */
+    private byte[] scanBytes = new byte[1 << 20];
+
+    private int scanLen = 0;
+
+    /** Bit offset in scanBytes[0] where the block being scanned starts, or -1 if no block is started. */
+    private int scanStartBit = -1;
+
+    private long window = 0;
+
+    private int windowBits = 0;
+
+    /** Bit offset in scanBytes of the last end-of-stream magic not followed by a stream header, or -1. */
+    private int rejectedEosBit = -1;
+
+    private int rejectedEosCRC = 0;
+
+    private boolean sourceExhausted = false;
+
+    private int computedCombinedCRC = 0;
+
+    private byte[] buffer = new byte[0];
+
+    private int bufferPos = 0;
+
+    /**
+     * Constructs a new ParallelBZip2InputStream which decompresses bytes read
+     * from the specified stream.
+     * <p>As {@link CBZip2InputStream}, this constructor expects the next byte in
+     * the stream to be the first one after the "BZ" magic.</p>
+     *
+     * @param in InputStream to read from
+     * @param threadSize the number of decompression threads
+     * @throws IOException if the stream content is malformed or an I/O error occurs.
+     */
+    public ParallelBZip2InputStream(final InputStream in, final int threadSize) throws IOException {
+        if (threadSize < 1) {
+            throw new IllegalArgumentException("threadSize(" + threadSize + ") < 1.");
+        }
+        this.in = in;
+        final int magic2 = nextByte();
+        if (magic2 != 'h') {
+            throw new IOException("Stream is not BZip2 formatted: expected 'h'" + " as first byte but got '" + (char) magic2 + "'");
+        }
+        final int blockSize = nextByte();
+        if ((blockSize < '1') || (blockSize > '9')) {
+            throw new IOException("Stream is not BZip2 formatted: illegal " + "blocksize " + (char) blockSize);
+        }
+        this.maxPendingBlocks = threadSize * 2;
+        this.executorService = Executors.newFixedThreadPool(threadSize, r -> {
+            final Thread thread = new Thread(r, "bzip2-block-decompressor-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fillBuffer()) {
+            return -1;
+        }
+        return buffer[bufferPos++] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] dest, final int offs, final int len) throws IOException {
+        if (offs < 0 || len < 0 || offs + len > dest.length) {
+            throw new IndexOutOfBoundsException("offs(" + offs + "), len(" + len + "), dest.length(" + dest.length + ").");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!fillBuffer()) {
+            return -1;
+        }
+        final int size = Math.min(len, buffer.length - bufferPos);
+        System.arraycopy(buffer, bufferPos, dest, offs, size);
+        bufferPos += size;
+        return size;
+    }
+
+    private boolean fillBuffer() throws IOException {
+        if (this.in == null) {
+            throw new IOException("stream closed");
+        }
+        while (bufferPos >= buffer.length) {
+            scanSegments();
+            final Segment segment = pollSegment();
+            if (segment == null) {
+                return false;
+            }
+            if (segment.future == null) {
+                // end of stream
+                if (segment.storedCRC != computedCombinedCRC) {
+                    throw new IOException("crc error");
+                }
+                computedCombinedCRC = 0;
+                continue;
+            }
+            buffer = getBlock(segment);
+            bufferPos = 0;
+        }
+        return true;
+    }
+
+    private byte[] getBlock(final Segment segment) throws IOException {
+        try {
+            final byte[] block = segment.future.get();
+            updateCombinedCRC(segment.getBlockCRC());
+            return block;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while decompressing.", e);
+        } catch (final ExecutionException e) {
+            // a magic number in compressed data splits a block
+            Segment merged = segment;
+            IOException cause = e.getCause() instanceof final IOException ioe ? ioe : new IOException(e.getCause());
+            for (int i = 1; i < MAX_MERGED_BLOCKS; i++) {
+                scanSegments();
+                final Segment next = pendingSegments.peek();
+                if (next == null || next.future == null) {
+                    break;
+                }
+                pollSegment().future.cancel(true);
+                merged = merged.merge(next);
+                try {
+                    final byte[] block = decode(merged);
+                    updateCombinedCRC(merged.getBlockCRC());
+                    return block;
+                } catch (final IOException ioe) {
+                    cause = ioe;
+                }
+            }
+            throw new IOException("Failed to decompress a block.", cause);
+        }
+    }
+
+    private void updateCombinedCRC(final int blockCRC) {
+        computedCombinedCRC = (computedCombinedCRC << 1) | (computedCombinedCRC >>> 31);
+        computedCombinedCRC ^= blockCRC;
+    }
+
+    /**
+     * Scans the source until enough blocks are submitted.
+     */
+    private void scanSegments() throws IOException {
+        while (!sourceExhausted && pendingBlocks < maxPendingBlocks) {
+            final int b = nextByte();
+            if (b < 0) {
+                sourceExhausted = true;
+                if (scanStartBit >= 0) {
+                    if (rejectedEosBit < 0) {
+                        throw new IOException("unexpected end of stream");
+                    }
+                    // the last stream is followed by bytes which are not a stream
+                    finishStream(rejectedEosBit, rejectedEosCRC);
+                }
+                break;
+            }
+            scanByte(b);
+        }
+    }
+
+    /**
+     * Appends a byte to the block being scanned and checks if a magic number ends in it.
+     */
+    private void scanByte(final int b) throws IOException {
+        appendScanByte(b);
+        window = (window << 8) | b;
+        windowBits += 8;
+        if (windowBits < MAGIC_BITS) {
+            return;
+        }
+        for (int shift = 7; shift >= 0; shift--) {
+            final long magic = (window >>> shift) & MAGIC_MASK;
+            if (magic == BLOCK_MAGIC) {
+                startBlock(scanLen * 8 - shift - MAGIC_BITS);
+                break;
+            }
+            if (magic == EOS_MAGIC && scanStartBit >= 0) {
+                endStream(scanLen * 8 - shift - MAGIC_BITS);
+                break;
+            }
+        }
+    }
+
+    private Segment pollSegment() {
+        final Segment segment = pendingSegments.poll();
+        if (segment != null && segment.future != null) {
+            pendingBlocks--;
+        }
+        return segment;
+    }
+
+    private void startBlock(final int magicBit) {
+        if (scanStartBit >= 0) {
+            submitBlock(magicBit);
+        }
+        final int startByte = magicBit >>> 3;
+        System.arraycopy(scanBytes, startByte, scanBytes, 0, scanLen - startByte);
+        scanLen -= startByte;
+        scanStartBit = magicBit & 7;
+        rejectedEosBit = -1;
+    }
+
+    /**
+     * Reads the trailer of a stream if the end-of-stream magic is confirmed
+     * by the end of the source or the header of a following stream.
+     * Otherwise, the bytes read after the magic are pushed back to the source,
+     * so they are scanned for magic numbers again.
+     *
+     * @param magicBit the bit offset of the end-of-stream magic in scanBytes
+     * @return true if the stream is ended
+     */
+    private boolean endStream(final int magicBit) throws IOException {
+        final int magicEnd = scanLen;
+        final int trailerEnd = (magicBit + MAGIC_BITS + CRC_BITS + 7) >>> 3;
+        while (scanLen < trailerEnd) {
+            final int b = nextByte();
+            if (b < 0) {
+                throw new IOException("unexpected end of stream");
+            }
+            appendScanByte(b);
+        }
+        final int storedCRC = (int) readBits(scanBytes, magicBit + MAGIC_BITS, CRC_BITS);
+
+        final int b = nextByte();
+        if (b >= 0) {
+            final int[] header = { b, nextByte(), nextByte(), nextByte() };
+            if (header[0] != 'B' || header[1] != 'Z' || header[2] != 'h' || header[3] < '1' || header[3] > '9') {
+                // not an end of stream, or the end of the last stream followed by other bytes
+                for (int i = header.length - 1; i >= 0; i--) {
+                    if (header[i] >= 0) {
+                        unreadByte(header[i]);
+                    }
+                }
+                while (scanLen > magicEnd) {
+                    unreadByte(scanBytes[--scanLen] & 0xff);
+                }
+                rejectedEosBit = magicBit;
+                rejectedEosCRC = storedCRC;
+                return false;
+            }
+        } else {
+            sourceExhausted = true;
+        }
+
+        finishStream(magicBit, storedCRC);
+        return true;
+    }
+
+    /**
+     * Submits the last block of a stream and the end-of-stream marker.
+     */
+    private void finishStream(final int magicBit, final int storedCRC) {
+        submitBlock(magicBit);
+        final Segment eos = new Segment(null, 0, 0, null);
+        eos.storedCRC = storedCRC;
+        pendingSegments.add(eos);
+
+        scanLen = 0;
+        scanStartBit = -1;
+        window = 0;
+        windowBits = 0;
+        rejectedEosBit = -1;
+    }
+
+    private void submitBlock(final int endBit) {
+        final int endByte = (endBit + 7) >>> 3;
+        final Segment segment = new Segment(Arrays.copyOf(scanBytes, endByte), scanStartBit, endBit - scanStartBit, null);
+        segment.future = executorService.submit(() -> decode(segment));
+        pendingSegments.add(segment);
+        pendingBlocks++;
+    }
+
+    private void appendScanByte(final int b) {
+        if (scanLen == scanBytes.length) {
+            scanBytes = Arrays.copyOf(scanBytes, scanBytes.length * 2);
+        }
+        scanBytes[scanLen++] = (byte) b;
+    }
+
+    private void unreadByte(final int b) {
+        unreadBytes[unreadLen++] = (byte) b;
+    }
+
+    private int nextByte() throws IOException {
+        if (unreadLen > 0) {
+            return unreadBytes[--unreadLen] & 0xff;
+        }
+        if (readBufferPos >= readBufferLen) {
+            readBufferLen = in.read(readBuffer, 0, readBuffer.length);
+            readBufferPos = 0;
+            if (readBufferLen <= 0) {
+                readBufferLen = 0;
+                return -1;
+            }
+        }
+        return readBuffer[readBufferPos++] & 0xff;
+    }
+
+    /**
+     * Decodes a block by wrapping it into a single block stream.
+     */
+    private static byte[] decode(final Segment segment) throws IOException {
+        final BitWriter writer = new BitWriter(segment.getBitLength() / 8 + 32);
+        writer.write('h', 8);
+        writer.write('9', 8);
+        for (Segment s = segment; s != null; s = s.next) {
+            writer.write(s.bytes, s.startBit, s.bitLength);
+        }
+        writer.write(EOS_MAGIC >>> 24, 24);
+        writer.write(EOS_MAGIC & 0xffffff, 24);
+        writer.write(segment.getBlockCRC() & 0xffffffffL, CRC_BITS);
+        try (CBZip2InputStream bzip2In = new CBZip2InputStream(new ByteArrayInputStream(writer.toByteArray()))) {
+            return bzip2In.readAllBytes();
+        }
+    }
+
+    private static long readBits(final byte[] bytes, final int startBit, final int n) {
+        long value = 0;
+        for (int i = startBit; i < startBit + n; i++) {
+            value = (value << 1) | ((bytes[i >>> 3] >>> (7 - (i & 7))) & 1);
+        }
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        final InputStream inShadow = this.in;
+        if (inShadow != null) {
+            try {
+                if (inShadow != System.in) {
+                    inShadow.close();
+                }
+            } finally {
+                this.in = null;
+                this.buffer = new byte[0];
+                this.scanBytes = new byte[0];
+                for (final Segment segment : pendingSegments) {
+                    if (segment.future != null) {
+                        segment.future.cancel(true);
+                    }
+                }
+                pendingSegments.clear();
+                pendingBlocks = 0;
+                executorService.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * A bit range of the compressed source, or an end-of-stream marker if future is null.
+     */
+    private static final class Segment {
+        final byte[] bytes;
+
+        final int startBit;
+
+        final int bitLength;
+
+        final Segment next;
+
+        Future<byte[]> future;
+
+        int storedCRC;
+
+        Segment(final byte[] bytes, final int startBit, final int bitLength, final Segment next) {
+            this.bytes = bytes;
+            this.startBit = startBit;
+            this.bitLength = bitLength;
+            this.next = next;
+        }
+
+        int getBitLength() {
+            return next == null ? bitLength : bitLength + next.getBitLength();
+        }
+
+        /** Returns the block CRC following the block magic. */
+        int getBlockCRC() {
+            if (bitLength < MAGIC_BITS + CRC_BITS) {
+                return 0;
+            }
+            return (int) readBits(bytes, startBit + MAGIC_BITS, CRC_BITS);
+        }
+
+        Segment merge(final Segment other) {
+            return new Segment(bytes, startBit, bitLength, next == null ? other : next.merge(other));
+        }
+    }
+
+    /**
+     * Writes bits in the MSB-first order of BZip2.
+     */
+    private static final class BitWriter {
+        private byte[] bytes;
+
+        private int len = 0;
+
+        private long buff = 0;
+
+        private int live = 0;
+
+        BitWriter(final int initialCapacity) {
+            bytes = new byte[initialCapacity];
+        }
+
+        void write(final long value, final int n) {
+            buff = (buff << n) | (value & ((1L << n) - 1));
+            live += n;
+            while (live >= 8) {
+                live -= 8;
+                append((int) (buff >>> live));
+            }
+        }
+
+        void write(final byte[] src, final int startBit, final int bitLength) {
+            int pos = startBit;
+            final int end = startBit + bitLength;
+            while ((pos & 7) != 0 && pos < end) {
+                write((src[pos >>> 3] >>> (7 - (pos & 7))) & 1, 1);
+                pos++;
+            }
+            while (pos + 8 <= end) {
+                write(src[pos >>> 3] & 0xff, 8);
+                pos += 8;
+            }
+            while (pos < end) {
+                write((src[pos >>> 3] >>> (7 - (pos & 7))) & 1, 1);
+                pos++;
+            }
+        }
+
+        private void append(final int b) {
+            if (len == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2 + 1);
+            }
+            bytes[len++] = (byte) b;
+        }
+
+        byte[] toByteArray() {
+            if (live > 0) {
+                write(0, 8 - live);
+            }
+            return Arrays.copyOf(bytes, len);
+        }
+    }
+}
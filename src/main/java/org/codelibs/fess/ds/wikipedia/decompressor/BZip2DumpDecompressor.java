@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.decompressor;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.codelibs.fess.ds.wikipedia.bzip2.CBZip2InputStream;
+import org.codelibs.fess.ds.wikipedia.bzip2.ParallelBZip2InputStream;
+
+/**
+ * Decompresses BZip2 dumps with the bundled decoder.
+ * With more than one thread, the blocks are decoded in parallel.
+ */
+public class BZip2DumpDecompressor implements DumpDecompressor {
+
+    /**
+     * Default constructor for BZip2DumpDecompressor.
+     */
+    public BZip2DumpDecompressor() {
+        // default constructor
+    }
+
+    @Override
+    public String getName() {
+        return "bzip2";
+    }
+
+    @Override
+    public boolean matches(final byte[] header, final int length) {
+        return length >= 4 && header[0] == 'B' && header[1] == 'Z' && header[2] == 'h' && header[3] >= '1' && header[3] <= '9';
+    }
+
+    @Override
+    public InputStream decompress(final InputStream in, final int threadSize) throws IOException {
+        final byte[] ignoreBytes = new byte[2];
+        in.read(ignoreBytes); //"B", "Z" bytes from commandline tools
+        if (threadSize > 1) {
+            return new ParallelBZip2InputStream(in, threadSize);
+        }
+        return new CBZip2InputStream(in, true);
+    }
+}
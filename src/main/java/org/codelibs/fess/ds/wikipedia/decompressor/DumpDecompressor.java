@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.decompressor;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decompresses a Wikipedia dump file.
+ * <p>Implementations are selected by the magic bytes at the start of the dump.
+ * Besides the built-in implementations, further implementations can be
+ * registered through {@link java.util.ServiceLoader}.</p>
+ */
+public interface DumpDecompressor {
+
+    /**
+     * Returns the name of this decompressor, such as "bzip2".
+     *
+     * @return the decompressor name
+     */
+    String getName();
+
+    /**
+     * Checks if the dump starts with the magic bytes of this format.
+     *
+     * @param header the first bytes of the dump
+     * @param length the number of valid bytes in header
+     * @return true if this decompressor can decompress the dump
+     */
+    boolean matches(byte[] header, int length);
+
+    /**
+     * Wraps the compressed dump into a decompressing stream.
+     *
+     * @param in the compressed dump, positioned at its first byte
+     * @param threadSize the number of threads the decompressor may use
+     * @return the decompressed stream
+     * @throws IOException if the stream cannot be decompressed
+     */
+    InputStream decompress(InputStream in, int threadSize) throws IOException;
+}
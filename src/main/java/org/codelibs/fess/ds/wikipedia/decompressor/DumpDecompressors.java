@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.decompressor;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.core.lang.StringUtil;
+
+/**
+ * Selects a {@link DumpDecompressor} for a dump.
+ * <p>Decompressors registered through {@link ServiceLoader} take precedence
+ * over the built-in bzip2, gzip, zstd and xz decompressors, so that a faster
+ * implementation of a format can be plugged in.</p>
+ */
+public class DumpDecompressors {
+
+    private static final Logger logger = LogManager.getLogger(DumpDecompressors.class);
+
+    /** The name to detect the format by the magic bytes. */
+    public static final String AUTO = "auto";
+
+    /** The name to read the dump without decompression. */
+    public static final String NONE = "none";
+
+    private static final int HEADER_SIZE = 16;
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final List<DumpDecompressor> decompressors;
+
+    /**
+     * Constructs a new DumpDecompressors with the registered and built-in decompressors.
+     */
+    public DumpDecompressors() {
+        final List<DumpDecompressor> list = new ArrayList<>();
+        for (final DumpDecompressor decompressor : ServiceLoader.load(DumpDecompressor.class, DumpDecompressor.class.getClassLoader())) {
+            list.add(decompressor);
+        }
+        list.add(new BZip2DumpDecompressor());
+        list.add(new GzipDumpDecompressor());
+        list.add(new ZstdDumpDecompressor());
+        list.add(new XzDumpDecompressor());
+        decompressors = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Returns the available decompressors in the order of precedence.
+     *
+     * @return the decompressors
+     */
+    public List<DumpDecompressor> getDecompressors() {
+        return decompressors;
+    }
+
+    /**
+     * Opens a decompressing stream for the dump.
+     *
+     * @param in the dump
+     * @param name the decompressor name, {@link #AUTO} to detect the format by the magic bytes, or {@link #NONE}
+     * @param threadSize the number of threads the decompressor may use
+     * @return the decompressed stream
+     * @throws IOException if the dump cannot be decompressed
+     */
+    public InputStream open(final InputStream in, final String name, final int threadSize) throws IOException {
+        final InputStream bufferedIn = new BufferedInputStream(in, BUFFER_SIZE);
+        if (NONE.equals(name)) {
+            return bufferedIn;
+        }
+        if (StringUtil.isNotBlank(name) && !AUTO.equals(name)) {
+            for (final DumpDecompressor decompressor : decompressors) {
+                if (name.equals(decompressor.getName())) {
+                    return decompressor.decompress(bufferedIn, threadSize);
+                }
+            }
+            throw new IOException("Unknown decompressor: " + name);
+        }
+
+        final DumpDecompressor decompressor = detect(bufferedIn);
+        if (decompressor == null) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("No compression is detected.");
+            }
+            return bufferedIn;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} compression is detected.", decompressor.getName());
+        }
+        return decompressor.decompress(bufferedIn, threadSize);
+    }
+
+    /**
+     * Detects the decompressor by the magic bytes without consuming them.
+     *
+     * @param in the dump, which must support mark/reset
+     * @return the decompressor, or null if the dump is not compressed
+     * @throws IOException if the dump cannot be read
+     */
+    public DumpDecompressor detect(final InputStream in) throws IOException {
+        final byte[] header = new byte[HEADER_SIZE];
+        in.mark(HEADER_SIZE);
+        final int length;
+        try {
+            length = in.readNBytes(header, 0, HEADER_SIZE);
+        } finally {
+            in.reset();
+        }
+        for (final DumpDecompressor decompressor : decompressors) {
+            if (decompressor.matches(header, length)) {
+                return decompressor;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.decompressor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Decompresses gzip dumps with the JDK inflater.
+ * Concatenated gzip members are decompressed as well.
+ */
+public class GzipDumpDecompressor implements DumpDecompressor {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * Default constructor for GzipDumpDecompressor.
+     */
+    public GzipDumpDecompressor() {
+        // default constructor
+    }
+
+    @Override
+    public String getName() {
+        return "gzip";
+    }
+
+    @Override
+    public boolean matches(final byte[] header, final int length) {
+        return length >= 2 && (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b;
+    }
+
+    @Override
+    public InputStream decompress(final InputStream in, final int threadSize) throws IOException {
+        return new GZIPInputStream(in, BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.decompressor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * A decompressor backed by an optional library which provides an
+ * InputStream subclass with an (InputStream) constructor.
+ * The library is not a dependency of this plugin and is only used
+ * if it is found on the classpath.
+ */
+public abstract class ReflectiveDumpDecompressor implements DumpDecompressor {
+
+    private final String streamClassName;
+
+    private final byte[] magic;
+
+    /**
+     * Constructs a new ReflectiveDumpDecompressor.
+     *
+     * @param streamClassName the class name of the decompressing stream
+     * @param magic the magic bytes of the format
+     */
+    protected ReflectiveDumpDecompressor(final String streamClassName, final byte[] magic) {
+        this.streamClassName = streamClassName;
+        this.magic = magic;
+    }
+
+    @Override
+    public boolean matches(final byte[] header, final int length) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public InputStream decompress(final InputStream in, final int threadSize) throws IOException {
+        final Constructor<?> constructor;
+        try {
+            constructor = Class.forName(streamClassName, true, getClass().getClassLoader()).getConstructor(InputStream.class);
+        } catch (final ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+            throw new IOException(getName() + " dump requires " + streamClassName + " on the classpath.", e);
+        }
+        try {
+            return (InputStream) constructor.newInstance(in);
+        } catch (final InvocationTargetException e) {
+            if (e.getCause() instanceof final IOException ioe) {
+                throw ioe;
+            }
+            throw new IOException("Could not create " + streamClassName, e.getCause());
+        } catch (final ReflectiveOperationException e) {
+            throw new IOException("Could not create " + streamClassName, e);
+        }
+    }
+}
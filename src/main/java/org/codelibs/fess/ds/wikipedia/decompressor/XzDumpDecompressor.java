@@ -0,0 +1,34 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.decompressor;
+
+/**
+ * Decompresses xz dumps with XZ for Java, if available.
+ */
+public class XzDumpDecompressor extends ReflectiveDumpDecompressor {
+
+    /**
+     * Default constructor for XzDumpDecompressor.
+     */
+    public XzDumpDecompressor() {
+        super("org.tukaani.xz.XZInputStream", new byte[] { (byte) 0xfd, '7', 'z', 'X', 'Z', 0 });
+    }
+
+    @Override
+    public String getName() {
+        return "xz";
+    }
+}
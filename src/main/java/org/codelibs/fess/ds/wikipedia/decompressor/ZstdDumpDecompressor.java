@@ -0,0 +1,34 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.decompressor;
+
+/**
+ * Decompresses Zstandard dumps with zstd-jni, if available.
+ */
+public class ZstdDumpDecompressor extends ReflectiveDumpDecompressor {
+
+    /**
+     * Default constructor for ZstdDumpDecompressor.
+     */
+    public ZstdDumpDecompressor() {
+        super("com.github.luben.zstd.ZstdInputStream", new byte[] { 0x28, (byte) 0xb5, 0x2f, (byte) 0xfd });
+    }
+
+    @Override
+    public String getName() {
+        return "zstd";
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * The progress of a crawl, saved periodically to resume the crawl after the crawler is stopped.
+ * <p>
+ * A checkpoint has the URL of the dump being crawled and the id of the last page
+ * which is stored together with all previous pages of the dump.
+ * The file is a properties file, written to a temporary file first and moved into place.
+ * </p>
+ *
+ * @author CodeLibs
+ */
+public class CrawlCheckpoint {
+
+    private static final String URL_KEY = "url";
+
+    private static final String PAGE_ID_KEY = "page_id";
+
+    private final Path file;
+
+    private final long interval;
+
+    private String url;
+
+    private String pageId;
+
+    private boolean modified;
+
+    private long lastSaved = System.currentTimeMillis();
+
+    /**
+     * Creates a checkpoint.
+     *
+     * @param file the checkpoint file
+     * @param interval the minimum interval in milliseconds between saves by {@link #update(String, String)}
+     */
+    public CrawlCheckpoint(final Path file, final long interval) {
+        this.file = file;
+        this.interval = interval;
+    }
+
+    /**
+     * Loads the checkpoint file if it exists.
+     *
+     * @return true if the checkpoint is loaded
+     * @throws IOException if the file could not be read
+     */
+    public boolean load() throws IOException {
+        if (!Files.exists(file)) {
+            return false;
+        }
+        final Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+        }
+        url = props.getProperty(URL_KEY);
+        pageId = props.getProperty(PAGE_ID_KEY);
+        if (url == null || pageId == null) {
+            throw new IOException("Invalid checkpoint: " + file);
+        }
+        return true;
+    }
+
+    /**
+     * Records the progress, and saves it if the interval has passed since the last save.
+     *
+     * @param url the URL of the dump
+     * @param pageId the id of the last page stored with all previous pages, or null if no page is stored
+     * @throws IOException if the file could not be written
+     */
+    public void update(final String url, final String pageId) throws IOException {
+        if (pageId == null || (pageId.equals(this.pageId) && url.equals(this.url))) {
+            return;
+        }
+        this.url = url;
+        this.pageId = pageId;
+        modified = true;
+        if (isDue()) {
+            save();
+        }
+    }
+
+    /**
+     * Checks if the interval has passed since the last save, so the next {@link #update(String, String)} saves the progress.
+     *
+     * @return true if the next update saves the progress
+     */
+    public boolean isDue() {
+        return System.currentTimeMillis() - lastSaved >= interval;
+    }
+
+    /**
+     * Saves the progress if it is updated after the last save.
+     *
+     * @throws IOException if the file could not be written
+     */
+    public void save() throws IOException {
+        if (!modified) {
+            return;
+        }
+        final Properties props = new Properties();
+        props.setProperty(URL_KEY, url);
+        props.setProperty(PAGE_ID_KEY, pageId);
+        final Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempFile)) {
+            props.store(out, "Wikipedia crawl checkpoint");
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        modified = false;
+        lastSaved = System.currentTimeMillis();
+    }
+
+    /**
+     * Deletes the checkpoint file when the crawl is completed.
+     *
+     * @throws IOException if the file could not be deleted
+     */
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+        url = null;
+        pageId = null;
+        modified = false;
+    }
+
+    /**
+     * Returns the URL of the dump being crawled.
+     *
+     * @return the URL, or null if no checkpoint
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the id of the last page stored with all previous pages.
+     *
+     * @return the page id, or null if no checkpoint
+     */
+    public String getPageId() {
+        return pageId;
+    }
+
+    /**
+     * Returns the checkpoint file.
+     *
+     * @return the file
+     */
+    public Path getFile() {
+        return file;
+    }
+}
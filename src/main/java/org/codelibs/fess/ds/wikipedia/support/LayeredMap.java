@@ -0,0 +1,158 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map whose own entries overlay a shared base map, which is read through and never modified.
+ * <p>
+ * The fields of a page are put into a layered map over the parameters of the crawl,
+ * so the parameters are not copied for each page. An entry of the map hides the entry
+ * of the base map with the same key. Entries of the base map cannot be removed.
+ * </p>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ * @author CodeLibs
+ */
+public class LayeredMap<K, V> extends AbstractMap<K, V> {
+
+    private final Map<K, V> base;
+
+    private final Map<K, V> overlay;
+
+    private Set<Map.Entry<K, V>> entrySet;
+
+    /**
+     * Creates a layered map.
+     *
+     * @param base the shared map, which must not be modified while this map is used
+     * @param expectedSize the number of entries to put without growing the overlay
+     */
+    public LayeredMap(final Map<K, V> base, final int expectedSize) {
+        this.base = base;
+        overlay = new LinkedHashMap<>((int) (expectedSize / 0.75f) + 1);
+    }
+
+    @Override
+    public V get(final Object key) {
+        final V value = overlay.get(key);
+        if (value != null || overlay.containsKey(key)) {
+            return value;
+        }
+        return base.get(key);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return overlay.containsKey(key) || base.containsKey(key);
+    }
+
+    @Override
+    public V put(final K key, final V value) {
+        if (overlay.containsKey(key)) {
+            return overlay.put(key, value);
+        }
+        overlay.put(key, value);
+        return base.get(key);
+    }
+
+    /**
+     * Removes an entry put into this map.
+     *
+     * @throws UnsupportedOperationException if the key is in the base map
+     */
+    @Override
+    public V remove(final Object key) {
+        if (base.containsKey(key)) {
+            throw new UnsupportedOperationException("The base entry cannot be removed: " + key);
+        }
+        return overlay.remove(key);
+    }
+
+    @Override
+    public int size() {
+        int size = overlay.size();
+        for (final K key : base.keySet()) {
+            if (!overlay.containsKey(key)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return LayeredMap.this.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /**
+     * Iterates the base entries which are not hidden, and then the entries of this map.
+     */
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+        private final Iterator<Map.Entry<K, V>> baseIterator = base.entrySet().iterator();
+
+        private final Iterator<Map.Entry<K, V>> overlayIterator = overlay.entrySet().iterator();
+
+        private Map.Entry<K, V> next;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && baseIterator.hasNext()) {
+                final Map.Entry<K, V> entry = baseIterator.next();
+                if (!overlay.containsKey(entry.getKey())) {
+                    // the base entry is read only
+                    next = new SimpleImmutableEntry<>(entry);
+                }
+            }
+            return next != null || overlayIterator.hasNext();
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (next != null) {
+                final Map.Entry<K, V> entry = next;
+                next = null;
+                return entry;
+            }
+            return overlayIterator.next();
+        }
+    }
+}
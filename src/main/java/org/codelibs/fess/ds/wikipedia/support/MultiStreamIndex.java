@@ -0,0 +1,177 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.codelibs.fess.ds.wikipedia.bzip2.CBZip2InputStream;
+
+/**
+ * The index of a pages-articles-multistream dump.
+ * <p>Each line of the index file has the form <code>offset:pageId:title</code>,
+ * where offset is the byte offset of the BZip2 stream containing the page.
+ * Only the stream offsets and the first page id of each stream are kept.</p>
+ */
+public class MultiStreamIndex {
+
+    private final long[] offsets;
+
+    private final long[] firstPageIds;
+
+    /**
+     * Constructs a new MultiStreamIndex.
+     *
+     * @param offsets the ascending byte offsets of the streams
+     * @param firstPageIds the first page id of each stream
+     */
+    public MultiStreamIndex(final long[] offsets, final long[] firstPageIds) {
+        this.offsets = offsets;
+        this.firstPageIds = firstPageIds;
+    }
+
+    /**
+     * Loads the index file. A ".bz2" suffix selects BZip2 decompression.
+     *
+     * @param indexUrl the URL of the index file
+     * @return the loaded index
+     * @throws IOException if the index file cannot be read
+     */
+    public static MultiStreamIndex load(final URL indexUrl) throws IOException {
+        final InputStream in = indexUrl.openStream();
+        final InputStream indexIn;
+        if (indexUrl.toExternalForm().endsWith(".bz2")) {
+            final byte[] ignoreBytes = new byte[2];
+            in.read(ignoreBytes); //"B", "Z" bytes from commandline tools
+            indexIn = new CBZip2InputStream(in, true);
+        } else {
+            indexIn = in;
+        }
+        try (Reader reader = new BufferedReader(new InputStreamReader(indexIn, StandardCharsets.UTF_8))) {
+            return load(reader);
+        }
+    }
+
+    /**
+     * Reads the index entries.
+     *
+     * @param reader the reader of the index entries
+     * @return the loaded index
+     * @throws IOException if the index cannot be read
+     */
+    public static MultiStreamIndex load(final Reader reader) throws IOException {
+        final BufferedReader br = reader instanceof final BufferedReader r ? r : new BufferedReader(reader);
+        long[] offsets = new long[1024];
+        long[] firstPageIds = new long[1024];
+        int size = 0;
+        long lastOffset = -1;
+        String line;
+        while ((line = br.readLine()) != null) {
+            final int pos1 = line.indexOf(':');
+            if (pos1 <= 0) {
+                continue;
+            }
+            final int pos2 = line.indexOf(':', pos1 + 1);
+            final long offset;
+            final long pageId;
+            try {
+                offset = Long.parseLong(line, 0, pos1, 10);
+                pageId = pos2 > pos1 ? Long.parseLong(line, pos1 + 1, pos2, 10) : -1;
+            } catch (final NumberFormatException e) {
+                throw new IOException("Invalid index entry: " + line, e);
+            }
+            if (offset == lastOffset) {
+                continue;
+            }
+            if (offset < lastOffset) {
+                throw new IOException("Index entries are not sorted: " + line);
+            }
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                firstPageIds = Arrays.copyOf(firstPageIds, size * 2);
+            }
+            offsets[size] = offset;
+            firstPageIds[size] = pageId;
+            size++;
+            lastOffset = offset;
+        }
+        return new MultiStreamIndex(Arrays.copyOf(offsets, size), Arrays.copyOf(firstPageIds, size));
+    }
+
+    /**
+     * Returns the ascending byte offsets of the streams.
+     *
+     * @return the stream offsets
+     */
+    public long[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Returns the first page id of each stream.
+     *
+     * @return the first page ids, in the order of {@link #getOffsets()}
+     */
+    public long[] getFirstPageIds() {
+        return firstPageIds;
+    }
+
+    /**
+     * Returns the index of the stream containing the page, assuming that the page ids are ascending as in Wikimedia dumps.
+     *
+     * @param pageId the page id
+     * @return the index of the last stream whose first page id is not greater than the page id,
+     *         or -1 if the page is before the first stream
+     */
+    public int findStream(final long pageId) {
+        int found = -1;
+        for (int i = 0; i < firstPageIds.length; i++) {
+            if (firstPageIds[i] > pageId) {
+                break;
+            }
+            if (firstPageIds[i] >= 0) {
+                found = i;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the index of the first stream starting at or after the byte offset.
+     *
+     * @param offset the byte offset in the dump
+     * @return the index of the stream, or {@link #size()} if no stream starts at or after the offset
+     */
+    public int findStreamAt(final long offset) {
+        final int index = Arrays.binarySearch(offsets, offset);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Returns the number of streams in the index.
+     *
+     * @return the number of streams
+     */
+    public int size() {
+        return offsets.length;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Selects the pages to read from a dump.
+ * <p>
+ * The parsers check the filter with the page header before the text of the page is read,
+ * so skipped pages are neither decoded into strings nor passed to the page callback.
+ * A condition which is not set accepts all pages.
+ * </p>
+ *
+ * @author CodeLibs
+ */
+public class PageFilter {
+
+    /** The namespace of a page whose &lt;ns&gt; element is missing. */
+    public static final int UNKNOWN_NAMESPACE = Integer.MIN_VALUE;
+
+    private Set<Integer> namespaces;
+
+    private boolean skipRedirects;
+
+    private String[] excludedTitlePrefixes;
+
+    private Set<String> models;
+
+    private long minPageId = -1;
+
+    private long maxPageId = -1;
+
+    private final AtomicLong skippedCount = new AtomicLong();
+
+    /**
+     * Sets the namespaces of the pages to read, such as 0 for articles.
+     * Pages without a namespace are not filtered.
+     *
+     * @param namespaces the namespace ids, or null for all namespaces
+     */
+    public void setNamespaces(final Set<Integer> namespaces) {
+        this.namespaces = namespaces;
+    }
+
+    /**
+     * Sets whether to skip the pages with a &lt;redirect&gt; element.
+     *
+     * @param skipRedirects true to skip redirects
+     */
+    public void setSkipRedirects(final boolean skipRedirects) {
+        this.skipRedirects = skipRedirects;
+    }
+
+    /**
+     * Sets the title prefixes of the pages to skip, such as "List of ".
+     *
+     * @param excludedTitlePrefixes the title prefixes, or null
+     */
+    public void setExcludedTitlePrefixes(final String[] excludedTitlePrefixes) {
+        this.excludedTitlePrefixes = excludedTitlePrefixes;
+    }
+
+    /**
+     * Sets the content models of the pages to read, such as "wikitext".
+     * Pages without a model are not filtered.
+     *
+     * @param models the content models, or null for all models
+     */
+    public void setModels(final Set<String> models) {
+        this.models = models;
+    }
+
+    /**
+     * Sets the smallest id of the pages to read, such as the page after a checkpoint.
+     * Pages without a numeric id are not filtered.
+     *
+     * @param minPageId the smallest page id, or -1 for all pages
+     */
+    public void setMinPageId(final long minPageId) {
+        this.minPageId = minPageId;
+    }
+
+    /**
+     * Sets the largest id of the pages to read, such as the last page of a shard.
+     * Pages without a numeric id are not filtered.
+     *
+     * @param maxPageId the largest page id, or -1 for all pages
+     */
+    public void setMaxPageId(final long maxPageId) {
+        this.maxPageId = maxPageId;
+    }
+
+    /**
+     * Checks if the page should be read by the fields of its header, and counts it if skipped.
+     *
+     * @param page the page with the fields before its text
+     * @return true if the page should be read
+     */
+    public boolean accept(final WikiPage page) {
+        if (minPageId >= 0 || maxPageId >= 0) {
+            final long pageId = parsePageId(page.getId());
+            if (pageId < minPageId || (maxPageId >= 0 && pageId > maxPageId && pageId != Long.MAX_VALUE)) {
+                skippedCount.incrementAndGet();
+                return false;
+            }
+        }
+        return accept(page.getTitle(), page.getNamespace(), page.getRedirectTitle() != null, page.getModel());
+    }
+
+    /**
+     * Checks if the page should be read, and counts it if skipped.
+     *
+     * @param title the title of the page
+     * @param namespace the namespace of the page, or {@link #UNKNOWN_NAMESPACE}
+     * @param redirect true if the page is a redirect
+     * @param model the content model of the page, or null
+     * @return true if the page should be read
+     */
+    public boolean accept(final String title, final int namespace, final boolean redirect, final String model) {
+        if (isAcceptable(title, namespace, redirect, model)) {
+            return true;
+        }
+        skippedCount.incrementAndGet();
+        return false;
+    }
+
+    private boolean isAcceptable(final String title, final int namespace, final boolean redirect, final String model) {
+        if (skipRedirects && redirect) {
+            return false;
+        }
+        if (namespaces != null && namespace != UNKNOWN_NAMESPACE && !namespaces.contains(namespace)) {
+            return false;
+        }
+        if (models != null && model != null && !models.contains(model)) {
+            return false;
+        }
+        if (excludedTitlePrefixes != null && title != null) {
+            for (final String prefix : excludedTitlePrefixes) {
+                if (title.startsWith(prefix)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of pages skipped by this filter.
+     *
+     * @return the number of skipped pages
+     */
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    /**
+     * Parses a page id.
+     *
+     * @param value the page id
+     * @return the page id, or {@link Long#MAX_VALUE} if the value is not a number
+     */
+    static long parsePageId(final String value) {
+        if (value == null) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (final NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Parses the content of a &lt;ns&gt; element.
+     *
+     * @param value the content of the element
+     * @return the namespace, or {@link #UNKNOWN_NAMESPACE} if the value is not a number
+     */
+    public static int parseNamespace(final String value) {
+        if (value == null) {
+            return UNKNOWN_NAMESPACE;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (final NumberFormatException e) {
+            return UNKNOWN_NAMESPACE;
+        }
+    }
+}
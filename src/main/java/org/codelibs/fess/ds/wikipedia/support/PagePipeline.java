@@ -0,0 +1,410 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.fess.ds.wikipedia.exception.ParserStoppedException;
+import org.codelibs.fess.exception.DataStoreException;
+
+/**
+ * Runs the stages of a crawl on separate threads connected by bounded queues.
+ * <p>
+ * A reader thread parses pages from the dump, and worker threads transform them.
+ * The transformed results are returned by {@link #next()} on the caller thread,
+ * in the order of the dump if the pipeline is ordered, or as soon as they are ready otherwise.
+ * A full queue blocks the previous stage, so a slow stage holds back the parser
+ * instead of buffering the dump in memory.
+ * </p>
+ * <p>
+ * A result returned by {@link #next()} is regarded as processed by the caller when {@link #hasNext()} is called again,
+ * and {@link #getCompletedPageId()} tells the page up to which all pages of the dump are processed, for checkpoints.
+ * </p>
+ *
+ * @param <T> the type of the transformed results
+ * @author CodeLibs
+ */
+public class PagePipeline<T> implements Iterator<T>, Closeable {
+
+    private static final Logger logger = LogManager.getLogger(PagePipeline.class);
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private static final Entry END_OF_PAGES = new Entry(-1, null, null);
+
+    private static final Entry END_OF_RESULTS = new Entry(-1, null, null);
+
+    private static final long CLOSE_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    private final WikiXMLParser parser;
+
+    private final Function<WikiPage, T> transformer;
+
+    private final int threadSize;
+
+    private final BlockingQueue<Entry> pageQueue;
+
+    private final BlockingQueue<Entry> resultQueue;
+
+    /** Limits the pages in flight, including the results waiting for reordering. Null if unordered. */
+    private final Semaphore inFlight;
+
+    private final Map<Long, Entry> reorderBuffer = new HashMap<>();
+
+    /** The processed results after a result which is not processed yet, by sequence. */
+    private final Map<Long, String> completedAhead = new HashMap<>();
+
+    private final Thread readerThread;
+
+    private final ExecutorService executorService;
+
+    private Consumer<T> discardHandler = result -> {};
+
+    private volatile boolean stopped;
+
+    private volatile Throwable failure;
+
+    private int finishedWorkers;
+
+    private long nextSequence;
+
+    private Entry nextEntry;
+
+    /** The last result returned by {@link #next()}, which is processed when {@link #hasNext()} is called. */
+    private Entry returnedEntry;
+
+    private long completedSequence = -1;
+
+    private String completedPageId;
+
+    /**
+     * Creates an unordered pipeline and starts reading the dump.
+     *
+     * @param parser the parser of the dump
+     * @param transformer the function to transform a page on a worker thread
+     * @param threadSize the number of worker threads
+     * @param queueSize the capacity of the page queue and the result queue
+     */
+    public PagePipeline(final WikiXMLParser parser, final Function<WikiPage, T> transformer, final int threadSize, final int queueSize) {
+        this(parser, transformer, threadSize, queueSize, false);
+    }
+
+    /**
+     * Creates a pipeline and starts reading the dump.
+     *
+     * @param parser the parser of the dump
+     * @param transformer the function to transform a page on a worker thread
+     * @param threadSize the number of worker threads
+     * @param queueSize the capacity of the page queue and the result queue
+     * @param ordered true to return the results in the order of the dump
+     */
+    public PagePipeline(final WikiXMLParser parser, final Function<WikiPage, T> transformer, final int threadSize, final int queueSize,
+            final boolean ordered) {
+        if (threadSize < 1) {
+            throw new IllegalArgumentException("threadSize(" + threadSize + ") < 1.");
+        }
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("queueSize(" + queueSize + ") < 1.");
+        }
+        this.parser = parser;
+        this.transformer = transformer;
+        this.threadSize = threadSize;
+        pageQueue = new ArrayBlockingQueue<>(queueSize);
+        resultQueue = new ArrayBlockingQueue<>(queueSize);
+        inFlight = ordered ? new Semaphore(queueSize * 2 + threadSize) : null;
+
+        final int id = THREAD_COUNTER.incrementAndGet();
+        readerThread = new Thread(this::readPages, "wikipedia-reader-" + id);
+        readerThread.setDaemon(true);
+        final AtomicInteger workerCounter = new AtomicInteger();
+        executorService = Executors.newFixedThreadPool(threadSize, r -> {
+            final Thread thread = new Thread(r, "wikipedia-worker-" + id + "-" + workerCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threadSize; i++) {
+            executorService.execute(this::transformPages);
+        }
+        readerThread.start();
+    }
+
+    /**
+     * Sets the handler for results which are transformed but not returned by {@link #next()}
+     * because the pipeline is closed.
+     *
+     * @param discardHandler the handler for discarded results
+     */
+    public void setDiscardHandler(final Consumer<T> discardHandler) {
+        this.discardHandler = discardHandler;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (returnedEntry != null) {
+            complete(returnedEntry);
+            returnedEntry = null;
+        }
+        while (nextEntry == null) {
+            if (inFlight != null && reorderBuffer.containsKey(nextSequence)) {
+                setNextEntry(reorderBuffer.remove(nextSequence++));
+                inFlight.release();
+                continue;
+            }
+            if (finishedWorkers == threadSize) {
+                if (failure != null) {
+                    if (failure instanceof final DataStoreException e) {
+                        throw e;
+                    }
+                    throw new DataStoreException("Could not parse wikipedia file.", failure);
+                }
+                if (!reorderBuffer.isEmpty()) {
+                    throw new DataStoreException("Missing page #" + nextSequence + " in the pipeline.");
+                }
+                return false;
+            }
+            final Entry entry;
+            try {
+                entry = resultQueue.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataStoreException("Interrupted while waiting for pages.", e);
+            }
+            if (entry == END_OF_RESULTS) {
+                finishedWorkers++;
+            } else if (inFlight != null) {
+                reorderBuffer.put(entry.sequence, entry);
+            } else {
+                setNextEntry(entry);
+            }
+        }
+        return true;
+    }
+
+    private void setNextEntry(final Entry entry) {
+        if (entry.value == null) {
+            // null results are not returned, so they are processed here
+            complete(entry);
+        } else {
+            nextEntry = entry;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        returnedEntry = nextEntry;
+        nextEntry = null;
+        return (T) returnedEntry.value;
+    }
+
+    /**
+     * Returns the id of the last page which is processed by the caller together with all previous pages of the dump.
+     * This method is called by the thread calling {@link #next()}.
+     *
+     * @return the page id, or null if no page is processed
+     */
+    public String getCompletedPageId() {
+        return completedPageId;
+    }
+
+    private void complete(final Entry entry) {
+        if (entry.sequence != completedSequence + 1) {
+            completedAhead.put(entry.sequence, entry.pageId);
+            return;
+        }
+        completedSequence = entry.sequence;
+        completedPageId = entry.pageId;
+        while (!completedAhead.isEmpty() && completedAhead.containsKey(completedSequence + 1)) {
+            completedPageId = completedAhead.remove(++completedSequence);
+        }
+    }
+
+    /**
+     * Stops the stages and closes the parser.
+     * Pages being transformed are completed, and results which are not returned yet
+     * are passed to the discard handler.
+     */
+    @Override
+    public void close() {
+        if (stopped && executorService.isTerminated()) {
+            return;
+        }
+        stopped = true;
+        readerThread.interrupt();
+        executorService.shutdown();
+        try {
+            parser.close();
+        } catch (final IOException e) {
+            logger.warn("Failed to close the dump.", e);
+        }
+        final long timeout = System.currentTimeMillis() + CLOSE_TIMEOUT;
+        try {
+            while (!executorService.awaitTermination(100, TimeUnit.MILLISECONDS)) {
+                // unblock workers waiting for the queues
+                discardResults();
+                pageQueue.clear();
+                for (int i = 0; i < threadSize; i++) {
+                    pageQueue.offer(END_OF_PAGES);
+                }
+                if (System.currentTimeMillis() > timeout) {
+                    logger.warn("Worker threads are still running.");
+                    executorService.shutdownNow();
+                    break;
+                }
+            }
+            readerThread.join(CLOSE_TIMEOUT);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (nextEntry != null) {
+            discard(nextEntry.value);
+            nextEntry = null;
+        }
+        discardResults();
+        reorderBuffer.values().forEach(entry -> discard(entry.value));
+        reorderBuffer.clear();
+    }
+
+    private void readPages() {
+        try {
+            if (parser instanceof final WikiXMLPullParser pullParser) {
+                final Iterator<WikiPage> pages = pullParser.iterator();
+                long sequence = 0;
+                while (!stopped && pages.hasNext()) {
+                    final WikiPage page = pages.next();
+                    putPage(new Entry(sequence++, page, page.getId()));
+                }
+            } else {
+                final long[] sequence = new long[1];
+                parser.setPageCallback(page -> {
+                    try {
+                        if (stopped) {
+                            throw new ParserStoppedException(page.getId());
+                        }
+                        putPage(new Entry(sequence[0]++, page, page.getId()));
+                    } catch (final InterruptedException e) {
+                        throw new ParserStoppedException(page.getId());
+                    }
+                });
+                parser.parse();
+            }
+        } catch (final InterruptedException | ParserStoppedException e) {
+            // stopped by close()
+        } catch (final Throwable t) {
+            if (!stopped) {
+                failure = t;
+            }
+        } finally {
+            // an interrupt from a stopping stage may arrive outside a blocking call,
+            // and must not prevent the workers from receiving the end markers
+            Thread.interrupted();
+            try {
+                for (int i = 0; i < threadSize; i++) {
+                    // workers are still running unless the pipeline is stopped
+                    while (!pageQueue.offer(END_OF_PAGES, 1, TimeUnit.SECONDS) && !stopped) {
+                        // retry
+                    }
+                }
+            } catch (final InterruptedException e) {
+                // stopped by close()
+            }
+        }
+    }
+
+    private void putPage(final Entry entry) throws InterruptedException {
+        if (inFlight != null) {
+            inFlight.acquire();
+        }
+        pageQueue.put(entry);
+    }
+
+    private void transformPages() {
+        try {
+            while (true) {
+                final Entry entry = pageQueue.take();
+                if (entry == END_OF_PAGES || stopped) {
+                    break;
+                }
+                final T result = transformer.apply((WikiPage) entry.value);
+                resultQueue.put(new Entry(entry.sequence, result, entry.pageId));
+            }
+        } catch (final InterruptedException e) {
+            return;
+        } catch (final Throwable t) {
+            failure = t;
+            stopped = true;
+            readerThread.interrupt();
+        }
+        try {
+            resultQueue.put(END_OF_RESULTS);
+        } catch (final InterruptedException e) {
+            // stopped by close()
+        }
+    }
+
+    private void discardResults() {
+        for (Entry entry; (entry = resultQueue.poll()) != null;) {
+            if (entry != END_OF_RESULTS) {
+                discard(entry.value);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void discard(final Object result) {
+        if (result != null) {
+            try {
+                discardHandler.accept((T) result);
+            } catch (final Exception e) {
+                logger.warn("Failed to discard {}", result, e);
+            }
+        }
+    }
+
+    private static class Entry {
+
+        final long sequence;
+
+        final Object value;
+
+        final String pageId;
+
+        Entry(final long sequence, final Object value, final String pageId) {
+            this.sequence = sequence;
+            this.value = value;
+            this.pageId = pageId;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An open-addressing map from a page id to its revision id and content hash, kept outside of the Java heap.
+ * <p>
+ * The slots are stored in memory-mapped segments of a scratch file, which is deleted when it is mapped,
+ * so tens of millions of pages neither use the heap nor count against the direct memory limit,
+ * and the operating system can page out the table under memory pressure.
+ * Each slot has 16 bytes: the page id plus one as an int, 0 for an empty slot,
+ * the revision id as an unsigned int, and the hash as a long.
+ * </p>
+ * <p>
+ * All methods are synchronized, as the table is replaced when it grows.
+ * </p>
+ *
+ * @author CodeLibs
+ */
+public class PageRevisionMap {
+
+    /** The maximum page id which can be stored. */
+    public static final int MAX_PAGE_ID = Integer.MAX_VALUE - 1;
+
+    /** The maximum revision id which can be stored. Larger ids are stored as 0. */
+    public static final long MAX_REVISION_ID = 0xFFFFFFFFL;
+
+    private static final int SLOT_SIZE = 16;
+
+    private static final int DEFAULT_SEGMENT_BITS = 26;
+
+    private static final int MIN_CAPACITY_BITS = 12;
+
+    private static final double MAX_LOAD_FACTOR = 0.7;
+
+    private final Path dir;
+
+    private final int segmentBits;
+
+    private MappedByteBuffer[] segments;
+
+    private int capacityBits;
+
+    private long threshold;
+
+    private long size;
+
+    /**
+     * Creates an empty map.
+     *
+     * @param dir the directory for the scratch file, which should not be on a memory file system
+     * @param expectedSize the number of pages to hold without growing the table
+     * @throws IOException if the scratch file could not be created
+     */
+    public PageRevisionMap(final Path dir, final long expectedSize) throws IOException {
+        this(dir, expectedSize, DEFAULT_SEGMENT_BITS);
+    }
+
+    PageRevisionMap(final Path dir, final long expectedSize, final int segmentBits) throws IOException {
+        this.dir = dir;
+        this.segmentBits = segmentBits;
+        int bits = MIN_CAPACITY_BITS;
+        while ((1L << bits) * MAX_LOAD_FACTOR < expectedSize) {
+            bits++;
+        }
+        allocate(bits);
+    }
+
+    /**
+     * Returns the revision id of the page.
+     *
+     * @param pageId the page id
+     * @return the revision id, 0 if unknown, or -1 if the page is not found
+     */
+    public synchronized long getRevisionId(final int pageId) {
+        final long slot = findSlot(pageId);
+        if (slot < 0) {
+            return -1;
+        }
+        return Integer.toUnsignedLong(segment(slot).getInt(offset(slot) + 4));
+    }
+
+    /**
+     * Returns the content hash of the page.
+     *
+     * @param pageId the page id
+     * @return the hash, or 0 if the page is not found
+     */
+    public synchronized long getHash(final int pageId) {
+        final long slot = findSlot(pageId);
+        if (slot < 0) {
+            return 0;
+        }
+        return segment(slot).getLong(offset(slot) + 8);
+    }
+
+    /**
+     * Puts the revision of the page, replacing the previous one.
+     *
+     * @param pageId the page id, from 0 to {@link #MAX_PAGE_ID}
+     * @param revisionId the revision id, or 0 if unknown
+     * @param hash the content hash
+     * @throws IOException if the table could not grow
+     */
+    public synchronized void put(final int pageId, final long revisionId, final long hash) throws IOException {
+        if (pageId < 0 || pageId > MAX_PAGE_ID) {
+            throw new IllegalArgumentException("Invalid page id: " + pageId);
+        }
+        long slot = findSlot(pageId);
+        if (slot < 0) {
+            if (size >= threshold) {
+                grow();
+            }
+            slot = insertSlot(pageId);
+            size++;
+        }
+        write(slot, pageId, revisionId > 0 && revisionId <= MAX_REVISION_ID ? (int) revisionId : 0, hash);
+    }
+
+    /**
+     * Returns the number of pages in the map.
+     *
+     * @return the number of pages
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Passes all entries to the consumer, in no particular order.
+     *
+     * @param consumer the consumer of the entries
+     * @throws IOException if the consumer failed
+     */
+    public synchronized void forEach(final EntryConsumer consumer) throws IOException {
+        final long capacity = 1L << capacityBits;
+        for (long slot = 0; slot < capacity; slot++) {
+            final MappedByteBuffer segment = segment(slot);
+            final int offset = offset(slot);
+            final int key = segment.getInt(offset);
+            if (key != 0) {
+                consumer.accept(key - 1, Integer.toUnsignedLong(segment.getInt(offset + 4)), segment.getLong(offset + 8));
+            }
+        }
+    }
+
+    private long findSlot(final int pageId) {
+        final int key = pageId + 1;
+        final long mask = (1L << capacityBits) - 1;
+        for (long slot = index(pageId);; slot = (slot + 1) & mask) {
+            final int value = segment(slot).getInt(offset(slot));
+            if (value == key) {
+                return slot;
+            }
+            if (value == 0) {
+                return -1;
+            }
+        }
+    }
+
+    private long insertSlot(final int pageId) {
+        final long mask = (1L << capacityBits) - 1;
+        long slot = index(pageId);
+        while (segment(slot).getInt(offset(slot)) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private long index(final int pageId) {
+        // Fibonacci hashing spreads consecutive page ids over the table
+        return (pageId * 0x9E3779B97F4A7C15L) >>> (64 - capacityBits);
+    }
+
+    private void write(final long slot, final int pageId, final int revisionId, final long hash) {
+        final MappedByteBuffer segment = segment(slot);
+        final int offset = offset(slot);
+        segment.putInt(offset, pageId + 1);
+        segment.putInt(offset + 4, revisionId);
+        segment.putLong(offset + 8, hash);
+    }
+
+    private MappedByteBuffer segment(final long slot) {
+        return segments[(int) (slot >>> segmentBits)];
+    }
+
+    private int offset(final long slot) {
+        return (int) (slot & ((1L << segmentBits) - 1)) * SLOT_SIZE;
+    }
+
+    private void grow() throws IOException {
+        final MappedByteBuffer[] oldSegments = segments;
+        final long oldCapacity = 1L << capacityBits;
+        final int oldSegmentSlots = (int) Math.min(oldCapacity, 1L << segmentBits);
+        allocate(capacityBits + 1);
+        for (final MappedByteBuffer segment : oldSegments) {
+            for (int i = 0; i < oldSegmentSlots; i++) {
+                final int offset = i * SLOT_SIZE;
+                final int key = segment.getInt(offset);
+                if (key != 0) {
+                    write(insertSlot(key - 1), key - 1, segment.getInt(offset + 4), segment.getLong(offset + 8));
+                }
+            }
+        }
+        // the old segments are unmapped when they are garbage collected
+    }
+
+    private void allocate(final int bits) throws IOException {
+        // page ids are ints, so 2^32 slots are enough
+        if (bits > 32) {
+            throw new IOException("Too many pages: " + size);
+        }
+        final long capacity = 1L << bits;
+        final long segmentSlots = Math.min(capacity, 1L << segmentBits);
+        final MappedByteBuffer[] newSegments = new MappedByteBuffer[(int) (capacity / segmentSlots)];
+        final Path file = Files.createTempFile(dir, "wikipedia-state", ".tmp");
+        // the mappings stay valid after the channel is closed, and the file is deleted on close
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE)) {
+            for (int i = 0; i < newSegments.length; i++) {
+                newSegments[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * segmentSlots * SLOT_SIZE, segmentSlots * SLOT_SIZE);
+            }
+        }
+        segments = newSegments;
+        capacityBits = bits;
+        threshold = (long) (capacity * MAX_LOAD_FACTOR);
+    }
+
+    /**
+     * Receives the entries of {@link PageRevisionMap#forEach(EntryConsumer)}.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+
+        /**
+         * Receives an entry.
+         *
+         * @param pageId the page id
+         * @param revisionId the revision id, or 0 if unknown
+         * @param hash the content hash
+         * @throws IOException if the entry could not be processed
+         */
+        void accept(int pageId, long revisionId, long hash) throws IOException;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the revision of each indexed page between crawls, to skip the pages which are not changed.
+ * <p>
+ * A page is identified by its numeric id, and its revision by a 64-bit hash of the sha1 of the text,
+ * or of the revision id if the dump has no sha1. The revisions are held in a {@link PageRevisionMap}
+ * outside of the heap, with a scratch file in the directory of the state file.
+ * The state is saved as a binary file of 16 bytes per page.
+ * </p>
+ *
+ * @author CodeLibs
+ */
+public class PageStateStore {
+
+    private static final int MAGIC = 0x57505331; // "WPS1"
+
+    private static final long DEFAULT_EXPECTED_SIZE = 100_000;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final PageRevisionMap revisions;
+
+    private final AtomicLong unchangedCount = new AtomicLong();
+
+    /**
+     * Creates an empty state.
+     *
+     * @param dir the directory for the scratch file of the revisions
+     * @param expectedSize the number of pages to hold without growing the table
+     * @throws IOException if the scratch file could not be created
+     */
+    public PageStateStore(final Path dir, final long expectedSize) throws IOException {
+        revisions = new PageRevisionMap(dir, expectedSize);
+    }
+
+    /**
+     * Loads the state saved by {@link #save(Path)}.
+     *
+     * @param file the state file
+     * @return the loaded state, or an empty state if the file does not exist
+     * @throws IOException if the file could not be read
+     */
+    public static PageStateStore load(final Path file) throws IOException {
+        final Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        if (!Files.exists(file)) {
+            return new PageStateStore(dir, DEFAULT_EXPECTED_SIZE);
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Unknown format of the state file: " + file);
+            }
+            final long count = in.readLong();
+            final PageStateStore store = new PageStateStore(dir, Math.max(count, DEFAULT_EXPECTED_SIZE));
+            for (long i = 0; i < count; i++) {
+                store.revisions.put(in.readInt(), Integer.toUnsignedLong(in.readInt()), in.readLong());
+            }
+            return store;
+        } catch (final EOFException e) {
+            throw new IOException("The state file is truncated: " + file, e);
+        }
+    }
+
+    /**
+     * Saves the state to the file.
+     * The state is written to a temporary file first, so the previous state is kept if the crawler stops while saving.
+     *
+     * @param file the state file
+     * @throws IOException if the file could not be written
+     */
+    public void save(final Path file) throws IOException {
+        final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 65536))) {
+            synchronized (revisions) {
+                out.writeInt(MAGIC);
+                out.writeLong(revisions.size());
+                revisions.forEach((pageId, revisionId, hash) -> {
+                    out.writeInt(pageId);
+                    out.writeInt((int) revisionId);
+                    out.writeLong(hash);
+                });
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Checks if the page has the same revision as the last indexed one, or an older revision
+     * such as a page in an incremental dump which is applied after a later one, and counts it if so.
+     *
+     * @param page the page
+     * @return true if the page is not changed
+     */
+    public boolean isUnchanged(final WikiPage page) {
+        final int pageId = parsePageId(page.getId());
+        if (pageId < 0) {
+            return false;
+        }
+        final long hash = getHash(page);
+        final long revisionId = parseRevisionId(page.getRevisionId());
+        if ((hash == 0 || revisions.getHash(pageId) != hash) && (revisionId <= 0 || revisions.getRevisionId(pageId) <= revisionId)) {
+            return false;
+        }
+        unchangedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Records the revision of the indexed page.
+     * Pages without a numeric id or a revision are not recorded, so they are always indexed.
+     *
+     * @param page the page
+     * @throws IOException if the table of the revisions could not grow
+     */
+    public void update(final WikiPage page) throws IOException {
+        final int pageId = parsePageId(page.getId());
+        final long hash = getHash(page);
+        if (pageId >= 0 && hash != 0) {
+            revisions.put(pageId, parseRevisionId(page.getRevisionId()), hash);
+        }
+    }
+
+    /**
+     * Returns the number of pages in the state.
+     *
+     * @return the number of pages
+     */
+    public long size() {
+        return revisions.size();
+    }
+
+    /**
+     * Returns the number of pages found unchanged by {@link #isUnchanged(WikiPage)}.
+     *
+     * @return the number of unchanged pages
+     */
+    public long getUnchangedCount() {
+        return unchangedCount.get();
+    }
+
+    private static long getHash(final WikiPage page) {
+        if (page.getSha1() != null) {
+            return hash(page.getSha1(), FNV_OFFSET_BASIS);
+        }
+        if (page.getRevisionId() != null) {
+            // differs from the hash of a sha1 with the same characters
+            return hash(page.getRevisionId(), ~FNV_OFFSET_BASIS);
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the FNV-1a hash of the string, which is never 0.
+     */
+    private static long hash(final String value, final long basis) {
+        long hash = basis;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static int parsePageId(final String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            final long pageId = Long.parseLong(value.trim());
+            return pageId >= 0 && pageId <= PageRevisionMap.MAX_PAGE_ID ? (int) pageId : -1;
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long parseRevisionId(final String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (final NumberFormatException e) {
+            return 0;
+        }
+    }
+}
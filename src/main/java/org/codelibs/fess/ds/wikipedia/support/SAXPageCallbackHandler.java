@@ -17,6 +17,7 @@ package org.codelibs.fess.ds.wikipedia.support;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.TimeZone;
 
 import org.apache.logging.log4j.LogManager;
@@ -35,93 +36,206 @@ public class SAXPageCallbackHandler extends DefaultHandler {
 
     private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss'Z'";
 
+    private static final int TIMESTAMP_LENGTH = 20;
+
+    /** The first full year of the Gregorian calendar, before which {@link SimpleDateFormat} uses the Julian calendar. */
+    private static final int MIN_GREGORIAN_YEAR = 1583;
+
     private static final Logger logger = LogManager.getLogger(SAXPageCallbackHandler.class);
 
+    /**
+     * Buffers larger than this are dropped after a page instead of being kept for the next one.
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
     /**
      * UTC TimeZone instance.
      */
     public static final TimeZone TIMEZONE_UTC = TimeZone.getTimeZone("UTC");
 
     private final PageCallbackHandler pageHandler;
+    private final PageFilter pageFilter;
     private WikiPage currentPage;
-    private String currentTag;
+    // the depth of the current element from the page element, which is 1
+    private int currentDepth;
+    private boolean inRevision;
+    private boolean inText;
+    // true while the content of a field element is collected into currentValue
+    private boolean inValue;
+    // null until the page is checked by the filter
+    private Boolean currentAccepted;
 
-    private String currentWikitext;
-    private String currentTitle;
+    private StringBuilder currentWikitext = new StringBuilder(8192);
+    private final StringBuilder currentValue = new StringBuilder(256);
 
     /**
      * Constructs a new SAXPageCallbackHandler with the specified PageCallbackHandler.
      * @param ph The PageCallbackHandler to use for processing Wikipedia pages.
      */
     public SAXPageCallbackHandler(final PageCallbackHandler ph) {
+        this(ph, null);
+    }
+
+    /**
+     * Constructs a new SAXPageCallbackHandler which skips the pages rejected by the filter.
+     * The text of a skipped page is not accumulated, and the page is not passed to the PageCallbackHandler.
+     *
+     * @param ph The PageCallbackHandler to use for processing Wikipedia pages.
+     * @param filter The filter of the pages, or null to process all pages.
+     */
+    public SAXPageCallbackHandler(final PageCallbackHandler ph, final PageFilter filter) {
         pageHandler = ph;
+        pageFilter = filter;
     }
 
     @Override
     public void startElement(final String uri, final String name, final String qName, final Attributes attr) {
-        currentTag = qName;
         if ("page".equals(qName)) {
             currentPage = new WikiPage();
-            currentWikitext = StringUtil.EMPTY;
-            currentTitle = StringUtil.EMPTY;
+            currentPage.setTitle(StringUtil.EMPTY);
+            if (currentWikitext.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                currentWikitext = new StringBuilder(8192);
+            } else {
+                currentWikitext.setLength(0);
+            }
+            currentDepth = 1;
+            inRevision = false;
+            inText = false;
+            inValue = false;
+            currentAccepted = null;
+            return;
+        }
+        if (currentPage == null) {
+            return;
+        }
+        currentDepth++;
+        if (currentDepth == 2) {
+            switch (qName) {
+            case "title":
+            case "ns":
+            case "id":
+                startValue();
+                break;
+            case "redirect": {
+                final String title = attr.getValue("title");
+                currentPage.setRedirectTitle(title != null ? title : StringUtil.EMPTY);
+                break;
+            }
+            case "revision":
+                inRevision = true;
+                break;
+            default:
+                break;
+            }
+        } else if (currentDepth == 3 && inRevision) {
+            switch (qName) {
+            case "id":
+            case "parentid":
+            case "timestamp":
+            case "model":
+            case "format":
+            case "sha1":
+                startValue();
+                break;
+            case "text":
+                if (currentAccepted == null) {
+                    // the header and the revision fields before the text are known here
+                    currentAccepted = isAccepted();
+                }
+                // a history dump has several revisions, and the latest one is used
+                currentWikitext.setLength(0);
+                inText = currentAccepted;
+                break;
+            default:
+                // contributor, comment and so on are skipped
+                break;
+            }
         }
     }
 
-    @Override
-    public void endElement(final String uri, final String name, final String qName) {
-        if ("page".equals(qName)) {
-            currentPage.setTitle(currentTitle);
-            currentPage.setWikiText(currentWikitext);
-            pageHandler.process(currentPage);
-        } else if ("mediawiki".equals(qName)) {
-            // TODO hasMoreElements() should now return false
-        }
+    private void startValue() {
+        currentValue.setLength(0);
+        inValue = true;
+    }
+
+    private boolean isAccepted() {
+        return pageFilter == null || pageFilter.accept(currentPage);
     }
 
     @Override
-    public void characters(final char ch[], final int start, final int length) {
-        switch (currentTag) {
-        case "title": {
-            currentTitle = currentTitle.concat(new String(ch, start, length));
-            break;
-        }
-        case "text": {
-            currentWikitext = currentWikitext.concat(new String(ch, start, length));
-            break;
+    public void endElement(final String uri, final String name, final String qName) {
+        if (currentPage == null) {
+            return;
         }
-        case "id": {
-            if (StringUtil.isBlank(currentPage.getId())) {
-                final String value = new String(ch, start, length);
-                if (StringUtil.isNotBlank(value)) {
-                    currentPage.setId(value.trim());
-                }
+        if (currentDepth == 1) {
+            if (currentAccepted == null) {
+                currentAccepted = isAccepted();
             }
-            break;
+            if (currentAccepted) {
+                currentPage.setWikiText(currentWikitext.toString());
+                pageHandler.process(currentPage);
+            }
+            currentPage = null;
+            currentDepth = 0;
+            return;
         }
-        case "format": {
-            final String value = new String(ch, start, length);
-            if (StringUtil.isNotBlank(value)) {
-                currentPage.setFormat(value.trim());
+        if (inValue) {
+            inValue = false;
+            if (currentDepth == 2) {
+                setPageValue(qName, currentValue.toString());
+            } else {
+                setRevisionValue(qName, currentValue.toString());
             }
-            break;
+        } else if (inText) {
+            inText = false;
+        } else if (currentDepth == 2 && "revision".equals(qName)) {
+            inRevision = false;
         }
-        case "model": {
-            final String value = new String(ch, start, length);
+        currentDepth--;
+    }
+
+    private void setPageValue(final String qName, final String value) {
+        switch (qName) {
+        case "title":
+            currentPage.setTitle(value);
+            break;
+        case "ns":
+            currentPage.setNamespace(PageFilter.parseNamespace(value));
+            break;
+        case "id":
             if (StringUtil.isNotBlank(value)) {
-                currentPage.setModel(value.trim());
+                currentPage.setId(value.trim());
             }
             break;
+        default:
+            break;
         }
+    }
+
+    private void setRevisionValue(final String qName, final String value) {
+        if (StringUtil.isBlank(value)) {
+            return;
+        }
+        switch (qName) {
+        case "id":
+            currentPage.setRevisionId(value.trim());
+            break;
+        case "parentid":
+            currentPage.setParentId(value.trim());
+            break;
+        case "sha1":
+            currentPage.setSha1(value.trim());
+            break;
+        case "model":
+            currentPage.setModel(value.trim());
+            break;
+        case "format":
+            currentPage.setFormat(value.trim());
+            break;
         case "timestamp": {
-            final String value = new String(ch, start, length);
-            if (StringUtil.isNotBlank(value)) {
-                try {
-                    final SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT);
-                    sdf.setTimeZone(TIMEZONE_UTC);
-                    currentPage.setTimestamp(sdf.parse(value));
-                } catch (final ParseException e) {
-                    logger.warn("Failed to parse " + value, e);
-                }
+            final long timestamp = parseTimestampMillis(value);
+            if (timestamp != WikiPage.NO_TIMESTAMP) {
+                currentPage.setTimestampMillis(timestamp);
             }
             break;
         }
@@ -129,4 +243,125 @@ public class SAXPageCallbackHandler extends DefaultHandler {
             break;
         }
     }
+
+    @Override
+    public void characters(final char ch[], final int start, final int length) {
+        if (inText) {
+            currentWikitext.append(ch, start, length);
+        } else if (inValue) {
+            currentValue.append(ch, start, length);
+        }
+    }
+
+    /**
+     * Parses a timestamp in a dump, such as 2023-01-15T10:30:00Z.
+     *
+     * @param value the timestamp string
+     * @return the parsed date, or null if the value is invalid
+     */
+    static Date parseTimestamp(final String value) {
+        final long timestamp = parseTimestampMillis(value);
+        return timestamp != WikiPage.NO_TIMESTAMP ? new Date(timestamp) : null;
+    }
+
+    /**
+     * Parses a timestamp in a dump, such as 2023-01-15T10:30:00Z, into the milliseconds since the epoch.
+     * A timestamp in the format of the dumps is parsed without creating objects,
+     * and other values are parsed by {@link SimpleDateFormat} as before.
+     *
+     * @param value the timestamp string, which may have surrounding whitespace
+     * @return the milliseconds since the epoch, or {@link WikiPage#NO_TIMESTAMP} if the value is invalid
+     */
+    static long parseTimestampMillis(final String value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (end - start == TIMESTAMP_LENGTH) {
+            final long timestamp = parseIsoTimestamp(value, start);
+            if (timestamp != WikiPage.NO_TIMESTAMP) {
+                return timestamp;
+            }
+        }
+        // lenient values such as a leap second, and dates before the Gregorian calendar
+        try {
+            final SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT);
+            sdf.setTimeZone(TIMEZONE_UTC);
+            return sdf.parse(value.substring(start, end)).getTime();
+        } catch (final ParseException e) {
+            logger.warn("Failed to parse " + value, e);
+            return WikiPage.NO_TIMESTAMP;
+        }
+    }
+
+    /**
+     * Parses yyyy-MM-ddTHH:mm:ssZ at the offset.
+     *
+     * @return the milliseconds since the epoch, or {@link WikiPage#NO_TIMESTAMP} if a field is not in the normal range
+     */
+    private static long parseIsoTimestamp(final String value, final int offset) {
+        if (value.charAt(offset + 4) != '-' || value.charAt(offset + 7) != '-' || value.charAt(offset + 10) != 'T'
+                || value.charAt(offset + 13) != ':' || value.charAt(offset + 16) != ':' || value.charAt(offset + 19) != 'Z') {
+            return WikiPage.NO_TIMESTAMP;
+        }
+        final int year = parseDigits(value, offset, 4);
+        final int month = parseDigits(value, offset + 5, 2);
+        final int day = parseDigits(value, offset + 8, 2);
+        final int hour = parseDigits(value, offset + 11, 2);
+        final int minute = parseDigits(value, offset + 14, 2);
+        final int second = parseDigits(value, offset + 17, 2);
+        if (year < MIN_GREGORIAN_YEAR || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month) || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return WikiPage.NO_TIMESTAMP;
+        }
+        return ((daysFromEpoch(year, month, day) * 24 + hour) * 60 + minute) * 60_000L + second * 1000L;
+    }
+
+    /**
+     * Parses the decimal digits.
+     *
+     * @return the number, or -1 if a character is not a digit
+     */
+    private static int parseDigits(final String value, final int offset, final int length) {
+        int number = 0;
+        for (int i = offset; i < offset + length; i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + c - '0';
+        }
+        return number;
+    }
+
+    private static int daysInMonth(final int year, final int month) {
+        switch (month) {
+        case 2:
+            return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        case 4:
+        case 6:
+        case 9:
+        case 11:
+            return 30;
+        default:
+            return 31;
+        }
+    }
+
+    /**
+     * Returns the number of days from 1970-01-01 to the date in the Gregorian calendar.
+     */
+    private static long daysFromEpoch(final int year, final int month, final int day) {
+        // counts the years from March, so the leap day is at the end of a year
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = y / 400;
+        final int yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
 }
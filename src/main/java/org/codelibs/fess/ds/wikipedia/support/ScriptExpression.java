@@ -0,0 +1,205 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A script expression which is evaluated without a script engine.
+ * <p>
+ * The simple Groovy expressions used in the script settings of the crawler are compiled once,
+ * and evaluated for each page with the same results as the script engine:
+ * </p>
+ * <ul>
+ * <li>a field, such as {@code title}</li>
+ * <li>a string literal without escapes or interpolation, such as {@code "ja"}</li>
+ * <li>the length of a string field, such as {@code content.length()}</li>
+ * <li>a concatenation starting with a string literal, such as {@code "https://ja.wikipedia.org/wiki/" + encodedTitle}</li>
+ * </ul>
+ * <p>
+ * If a field is missing or has a value whose string form may differ in Groovy,
+ * {@link #evaluate(Map)} returns {@link #NOT_EVALUATED}, and the script engine should evaluate the expression.
+ * </p>
+ *
+ * @author CodeLibs
+ */
+public final class ScriptExpression {
+
+    /** The result of {@link #evaluate(Map)} when the expression needs the script engine. */
+    public static final Object NOT_EVALUATED = new Object();
+
+    private static final int LITERAL = 0;
+
+    private static final int FIELD = 1;
+
+    private static final int LENGTH = 2;
+
+    /** The kinds of the terms: {@link #LITERAL}, {@link #FIELD} or {@link #LENGTH}. */
+    private final int[] kinds;
+
+    /** The literal values or the field names of the terms. */
+    private final String[] values;
+
+    private ScriptExpression(final int[] kinds, final String[] values) {
+        this.kinds = kinds;
+        this.values = values;
+    }
+
+    /**
+     * Compiles a script expression.
+     *
+     * @param script the script
+     * @param groovy true if the script is evaluated by Groovy, otherwise only a field is compiled
+     * @return the compiled expression, or null if the script needs the script engine
+     */
+    public static ScriptExpression compile(final String script, final boolean groovy) {
+        if (script == null) {
+            return null;
+        }
+        if (isIdentifier(script, 0, script.length())) {
+            return new ScriptExpression(new int[] { FIELD }, new String[] { script });
+        }
+        if (!groovy) {
+            return null;
+        }
+        final List<Integer> kinds = new ArrayList<>();
+        final List<String> values = new ArrayList<>();
+        final int length = script.length();
+        int pos = skipWhitespace(script, 0);
+        while (true) {
+            if (pos >= length) {
+                return null;
+            }
+            final char c = script.charAt(pos);
+            if (c == '"' || c == '\'') {
+                final int end = script.indexOf(c, pos + 1);
+                if (end < 0) {
+                    return null;
+                }
+                final String literal = script.substring(pos + 1, end);
+                // escapes, interpolation and line breaks are left to the script engine
+                if (literal.indexOf('\\') >= 0 || (c == '"' && literal.indexOf('$') >= 0) || literal.indexOf('\n') >= 0
+                        || literal.indexOf('\r') >= 0) {
+                    return null;
+                }
+                kinds.add(LITERAL);
+                values.add(literal);
+                pos = end + 1;
+            } else {
+                int end = pos;
+                while (end < length && Character.isJavaIdentifierPart(script.charAt(end)) && script.charAt(end) != '$') {
+                    end++;
+                }
+                if (!isIdentifier(script, pos, end)) {
+                    return null;
+                }
+                values.add(script.substring(pos, end));
+                if (script.startsWith(".length()", end)) {
+                    kinds.add(LENGTH);
+                    end += ".length()".length();
+                } else {
+                    kinds.add(FIELD);
+                }
+                pos = end;
+            }
+            pos = skipWhitespace(script, pos);
+            if (pos >= length) {
+                break;
+            }
+            if (script.charAt(pos) != '+') {
+                return null;
+            }
+            pos = skipWhitespace(script, pos + 1);
+        }
+        // a field followed by + is not a string concatenation in Groovy, such as a date plus a number
+        if (kinds.size() > 1 && kinds.get(0) != LITERAL) {
+            return null;
+        }
+        final int[] kindArray = new int[kinds.size()];
+        for (int i = 0; i < kindArray.length; i++) {
+            kindArray[i] = kinds.get(i);
+        }
+        return new ScriptExpression(kindArray, values.toArray(new String[values.size()]));
+    }
+
+    /**
+     * Evaluates the expression.
+     *
+     * @param fields the fields of the page
+     * @return the value, or {@link #NOT_EVALUATED} if the expression needs the script engine
+     */
+    public Object evaluate(final Map<String, Object> fields) {
+        if (kinds.length == 1) {
+            return evaluateTerm(0, fields);
+        }
+        final StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < kinds.length; i++) {
+            final Object value = evaluateTerm(i, fields);
+            if (value == NOT_EVALUATED) {
+                return NOT_EVALUATED;
+            }
+            if (value == null || value instanceof CharSequence || value instanceof Number || value instanceof Boolean
+                    || value instanceof Date) {
+                buf.append(value);
+            } else {
+                // such as arrays and maps, which Groovy formats differently
+                return NOT_EVALUATED;
+            }
+        }
+        return buf.toString();
+    }
+
+    private Object evaluateTerm(final int index, final Map<String, Object> fields) {
+        switch (kinds[index]) {
+        case LITERAL:
+            return values[index];
+        case FIELD:
+            if (!fields.containsKey(values[index])) {
+                return NOT_EVALUATED;
+            }
+            return fields.get(values[index]);
+        default:
+            if (fields.get(values[index]) instanceof final String value) {
+                return value.length();
+            }
+            return NOT_EVALUATED;
+        }
+    }
+
+    private static boolean isIdentifier(final String value, final int start, final int end) {
+        if (start >= end || !Character.isJavaIdentifierStart(value.charAt(start)) || value.charAt(start) == '$') {
+            return false;
+        }
+        for (int i = start + 1; i < end; i++) {
+            final char c = value.charAt(i);
+            if (!Character.isJavaIdentifierPart(c) || c == '$') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipWhitespace(final String value, final int start) {
+        int pos = start;
+        while (pos < value.length() && (value.charAt(pos) == ' ' || value.charAt(pos) == '\t')) {
+            pos++;
+        }
+        return pos;
+    }
+}
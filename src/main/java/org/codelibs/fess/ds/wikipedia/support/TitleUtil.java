@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+/**
+ * Utilities for page titles, which are processed for every page of a dump.
+ *
+ * @author CodeLibs
+ */
+public final class TitleUtil {
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /** The largest buffer kept for each thread. Titles are at most 255 bytes. */
+    private static final int MAX_BUFFER_SIZE = 4096;
+
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[256]);
+
+    private TitleUtil() {
+        // utility class
+    }
+
+    /**
+     * Removes the trailing line feeds and spaces of a title.
+     *
+     * @param title the title
+     * @return the title without trailing line feeds and spaces, or the title itself if it has none
+     */
+    public static String strip(final String title) {
+        int end = title.length();
+        while (end > 0 && (title.charAt(end - 1) == '\n' || title.charAt(end - 1) == ' ')) {
+            end--;
+        }
+        return end == title.length() ? title : title.substring(0, end);
+    }
+
+    /**
+     * Encodes a title for a URL query or path, with the same result as
+     * {@code URLEncoder.encode(title, "UTF-8")}.
+     * A title which needs no encoding is returned as is, and others are encoded in a buffer reused by the thread.
+     *
+     * @param title the title
+     * @return the encoded title
+     */
+    public static String encode(final String title) {
+        final int length = title.length();
+        int start = 0;
+        while (start < length && isUnreserved(title.charAt(start))) {
+            start++;
+        }
+        if (start == length) {
+            return title;
+        }
+        // a char is encoded into at most 3 bytes of 3 chars each
+        final int size = start + (length - start) * 9;
+        char[] buf = BUFFER.get();
+        if (buf.length < size) {
+            buf = new char[size];
+            if (size <= MAX_BUFFER_SIZE) {
+                BUFFER.set(buf);
+            }
+        }
+        title.getChars(0, start, buf, 0);
+        int pos = start;
+        for (int i = start; i < length; i++) {
+            final char c = title.charAt(i);
+            if (isUnreserved(c)) {
+                buf[pos++] = c;
+            } else if (c == ' ') {
+                buf[pos++] = '+';
+            } else if (c < 0x80) {
+                pos = appendByte(buf, pos, c);
+            } else if (c < 0x800) {
+                pos = appendByte(buf, pos, 0xC0 | (c >> 6));
+                pos = appendByte(buf, pos, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(title.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, title.charAt(++i));
+                pos = appendByte(buf, pos, 0xF0 | (codePoint >> 18));
+                pos = appendByte(buf, pos, 0x80 | ((codePoint >> 12) & 0x3F));
+                pos = appendByte(buf, pos, 0x80 | ((codePoint >> 6) & 0x3F));
+                pos = appendByte(buf, pos, 0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // an unpaired surrogate is replaced with '?' by the UTF-8 encoder
+                pos = appendByte(buf, pos, '?');
+            } else {
+                pos = appendByte(buf, pos, 0xE0 | (c >> 12));
+                pos = appendByte(buf, pos, 0x80 | ((c >> 6) & 0x3F));
+                pos = appendByte(buf, pos, 0x80 | (c & 0x3F));
+            }
+        }
+        return new String(buf, 0, pos);
+    }
+
+    private static boolean isUnreserved(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '*'
+                || c == '_';
+    }
+
+    private static int appendByte(final char[] buf, final int pos, final int b) {
+        buf[pos] = '%';
+        buf[pos + 1] = HEX_DIGITS[(b >> 4) & 0xF];
+        buf[pos + 2] = HEX_DIGITS[b & 0xF];
+        return pos + 3;
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.codelibs.fess.ds.wikipedia.support;
 
+import java.time.Instant;
 import java.util.Date;
 import java.util.List;
 
@@ -26,6 +27,9 @@ import java.util.List;
  */
 public class WikiPage {
 
+    /** The value of {@link #getTimestampMillis()} for a page without a timestamp. */
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
     /**
      * Constructs a new WikiPage object.
      */
@@ -34,11 +38,19 @@ public class WikiPage {
     }
 
     private String title = null;
+    private String wikiText = null;
+    // created when the wiki text is first parsed, so filtered pages are never scanned
     private WikiTextParser wikiTextParser = null;
     private String id = null;
-    private Date timestamp;
+    // kept as the epoch milliseconds, so parsing a timestamp creates no object
+    private long timestamp = NO_TIMESTAMP;
     private String format;
     private String model;
+    private int namespace = PageFilter.UNKNOWN_NAMESPACE;
+    private String redirectTitle;
+    private String revisionId;
+    private String parentId;
+    private String sha1;
 
     /**
      * Set the page title. This is not intended for direct use.
@@ -56,7 +68,15 @@ public class WikiPage {
      * @param wtext wiki-formatted text
      */
     public void setWikiText(final String wtext) {
-        wikiTextParser = new WikiTextParser(wtext);
+        wikiText = wtext;
+        wikiTextParser = null;
+    }
+
+    private WikiTextParser getWikiTextParser() {
+        if (wikiTextParser == null) {
+            wikiTextParser = new WikiTextParser(wikiText);
+        }
+        return wikiTextParser;
     }
 
     /**
@@ -74,7 +94,7 @@ public class WikiPage {
      * @return A string containing the title translated in the given languageCode.
      */
     public String getTranslatedTitle(final String languageCode) {
-        return wikiTextParser.getTranslatedTitle(languageCode);
+        return getWikiTextParser().getTranslatedTitle(languageCode);
     }
 
     /**
@@ -83,7 +103,7 @@ public class WikiPage {
      * @return true if this a disambiguation page.
      */
     public boolean isDisambiguationPage() {
-        if (title.contains("(disambiguation)") || wikiTextParser.isDisambiguationPage()) {
+        if (title.contains("(disambiguation)") || getWikiTextParser().isDisambiguationPage()) {
             return true;
         }
         return false;
@@ -105,7 +125,7 @@ public class WikiPage {
      * @return a string containing the wiki text.
      */
     public String getWikiText() {
-        return wikiTextParser.getText();
+        return wikiText;
     }
 
     /**
@@ -114,7 +134,7 @@ public class WikiPage {
      * @return true if this is a redirection page
      */
     public boolean isRedirect() {
-        return wikiTextParser.isRedirect();
+        return getWikiTextParser().isRedirect();
     }
 
     /**
@@ -123,7 +143,7 @@ public class WikiPage {
      * @return true if this is a stub page
      */
     public boolean isStub() {
-        return wikiTextParser.isStub();
+        return getWikiTextParser().isStub();
     }
 
     /**
@@ -132,7 +152,7 @@ public class WikiPage {
      * @return the title of the page being redirected to.
      */
     public String getRedirectPage() {
-        return wikiTextParser.getRedirectText();
+        return getWikiTextParser().getRedirectText();
     }
 
     /**
@@ -141,7 +161,7 @@ public class WikiPage {
      * @return plain text stripped of all wiki formatting.
      */
     public String getText() {
-        return wikiTextParser.getPlainText();
+        return getWikiTextParser().getPlainText();
     }
 
     /**
@@ -150,7 +170,7 @@ public class WikiPage {
      * @return a list of categories the page belongs to, null if this a redirection/disambiguation page
      */
     public List<String> getCategories() {
-        return wikiTextParser.getCategories();
+        return getWikiTextParser().getCategories();
     }
 
     /**
@@ -159,7 +179,7 @@ public class WikiPage {
      * @return a list of links contained in the page
      */
     public List<String> getLinks() {
-        return wikiTextParser.getLinks();
+        return getWikiTextParser().getLinks();
     }
 
     /**
@@ -177,7 +197,7 @@ public class WikiPage {
      * @return an InfoBox object containing structured data from the page's infobox.
      */
     public InfoBox getInfoBox() {
-        return wikiTextParser.getInfoBox();
+        return getWikiTextParser().getInfoBox();
     }
 
     /**
@@ -195,18 +215,45 @@ public class WikiPage {
      * @param timestamp a Date object representing the page's timestamp.
      */
     public void setTimestamp(final Date timestamp) {
-        this.timestamp = timestamp;
+        this.timestamp = timestamp != null ? timestamp.getTime() : NO_TIMESTAMP;
     }
 
     /**
      * Returns the timestamp of the Wikipedia page.
      *
-     * @return a Date object representing the page's timestamp.
+     * @return a new Date object representing the page's timestamp, or null if the page has no timestamp.
      */
     public Date getTimestamp() {
+        return timestamp != NO_TIMESTAMP ? new Date(timestamp) : null;
+    }
+
+    /**
+     * Sets the timestamp of the Wikipedia page.
+     *
+     * @param timestamp the milliseconds since the epoch, or {@link #NO_TIMESTAMP}
+     */
+    public void setTimestampMillis(final long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Returns the timestamp of the Wikipedia page.
+     *
+     * @return the milliseconds since the epoch, or {@link #NO_TIMESTAMP} if the page has no timestamp
+     */
+    public long getTimestampMillis() {
         return timestamp;
     }
 
+    /**
+     * Returns the timestamp of the Wikipedia page.
+     *
+     * @return the instant of the page's timestamp, or null if the page has no timestamp
+     */
+    public Instant getTimestampInstant() {
+        return timestamp != NO_TIMESTAMP ? Instant.ofEpochMilli(timestamp) : null;
+    }
+
     /**
      * Sets the format of the Wikipedia page content.
      *
@@ -242,4 +289,95 @@ public class WikiPage {
     public String getModel() {
         return model;
     }
+
+    /**
+     * Sets the namespace of the Wikipedia page.
+     *
+     * @param namespace the namespace id, such as 0 for articles.
+     */
+    public void setNamespace(final int namespace) {
+        this.namespace = namespace;
+    }
+
+    /**
+     * Returns the namespace of the Wikipedia page.
+     *
+     * @return the namespace id, or {@link PageFilter#UNKNOWN_NAMESPACE} if the dump has no &lt;ns&gt; element.
+     */
+    public int getNamespace() {
+        return namespace;
+    }
+
+    /**
+     * Sets the title of the page which this page redirects to.
+     *
+     * @param redirectTitle the title in the &lt;redirect&gt; element.
+     */
+    public void setRedirectTitle(final String redirectTitle) {
+        this.redirectTitle = redirectTitle;
+    }
+
+    /**
+     * Returns the title of the page which this page redirects to, from the &lt;redirect&gt; element.
+     * Unlike {@link #getRedirectPage()}, the wiki text is not parsed.
+     *
+     * @return the redirect title, or null if this page has no &lt;redirect&gt; element.
+     */
+    public String getRedirectTitle() {
+        return redirectTitle;
+    }
+
+    /**
+     * Sets the ID of the revision of the Wikipedia page.
+     *
+     * @param revisionId a string containing the revision ID.
+     */
+    public void setRevisionId(final String revisionId) {
+        this.revisionId = revisionId;
+    }
+
+    /**
+     * Returns the ID of the revision of the Wikipedia page.
+     *
+     * @return a string containing the revision ID.
+     */
+    public String getRevisionId() {
+        return revisionId;
+    }
+
+    /**
+     * Sets the ID of the parent revision.
+     *
+     * @param parentId a string containing the parent revision ID.
+     */
+    public void setParentId(final String parentId) {
+        this.parentId = parentId;
+    }
+
+    /**
+     * Returns the ID of the parent revision.
+     *
+     * @return a string containing the parent revision ID, or null for the first revision.
+     */
+    public String getParentId() {
+        return parentId;
+    }
+
+    /**
+     * Sets the SHA-1 digest of the revision text.
+     *
+     * @param sha1 the base 36 SHA-1 digest in the dump.
+     */
+    public void setSha1(final String sha1) {
+        this.sha1 = sha1;
+    }
+
+    /**
+     * Returns the SHA-1 digest of the revision text, which changes only when the text changes.
+     *
+     * @return the base 36 SHA-1 digest in the dump, or null if not available.
+     */
+    public String getSha1() {
+        return sha1;
+    }
 }
@@ -15,6 +15,7 @@
  */
 package org.codelibs.fess.ds.wikipedia.support;
 
+import java.util.Iterator;
 import java.util.Vector;
 
 /**
@@ -28,6 +29,7 @@ public class WikiPageIterator {
     private int currentPage = 0;
     private int lastPage = 0;
     Vector<WikiPage> pageList = null;
+    private Iterator<WikiPage> pageIterator = null;
 
     /**
      * Creates a new WikiPageIterator with the given list of WikiPages.
@@ -40,18 +42,33 @@ public class WikiPageIterator {
         }
     }
 
+    /**
+     * Creates a new WikiPageIterator which reads pages lazily from the given iterator.
+     * @param iterator The iterator of WikiPages to read.
+     */
+    public WikiPageIterator(final Iterator<WikiPage> iterator) {
+        pageIterator = iterator;
+    }
+
     /**
      * Checks if there are more pages to be read.
      * @return true if there are more pages to be read
      */
     public boolean hasMorePages() {
+        if (pageIterator != null) {
+            return pageIterator.hasNext();
+        }
         return (currentPage < lastPage);
     }
 
     /**
      * Reset the iterator.
+     * An iterator reading pages lazily can't be reset.
      */
     public void reset() {
+        if (pageIterator != null) {
+            throw new UnsupportedOperationException("The pages are read lazily.");
+        }
         currentPage = 0;
     }
 
@@ -62,6 +79,9 @@ public class WikiPageIterator {
      */
     public WikiPage nextPage() {
         if (hasMorePages()) {
+            if (pageIterator != null) {
+                return pageIterator.next();
+            }
             return pageList.elementAt(currentPage++);
         }
         return null;
@@ -0,0 +1,494 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Converts wiki formatted text to plain text in a single scan.
+ * <p>
+ * The following markup is handled:
+ * </p>
+ * <ul>
+ * <li>templates, including nested ones, are removed</li>
+ * <li>internal links are replaced with their label, and links with a namespace are removed</li>
+ * <li>external links are replaced with their label</li>
+ * <li>references and comments are removed with their content, and other HTML tags are removed</li>
+ * <li>{@code &lt;} and {@code &gt;} also form tags, and other entities are decoded</li>
+ * <li>bold and italic quotes are removed</li>
+ * </ul>
+ * <p>
+ * Unclosed markup is kept as text. To keep the conversion linear on broken pages,
+ * the ends of the remaining templates are found in one scan once a template is unclosed,
+ * internal links after an unclosed one are kept as text, and so are external links
+ * before the end of the line of an unclosed one.
+ * </p>
+ *
+ * @author CodeLibs
+ */
+public final class WikiTextConverter {
+
+    private static final String[] URL_PREFIXES = { "http://", "https://", "ftp://", "ftps://", "//", "mailto:", "news:", "irc://",
+            "ircs://", "git://", "svn://" };
+
+    private static final int MAX_TAG_LENGTH = 1024;
+
+    private static final int MAX_ENTITY_LENGTH = 10;
+
+    /** The strings searched for the ends of refs and comments, indexed by the constants below. */
+    private static final String[] END_TOKENS = { "</ref", "&lt;/ref", "-->", "--&gt;", ">", "&gt;" };
+
+    private static final int REF_END = 0;
+
+    private static final int REF_END_ENTITY = 1;
+
+    private static final int COMMENT_END = 2;
+
+    private static final int COMMENT_END_ENTITY = 3;
+
+    private static final int TAG_END = 4;
+
+    private static final int TAG_END_ENTITY = 5;
+
+    private final String text;
+
+    private final int length;
+
+    private final StringBuilder buf;
+
+    /** The position of the markup which closes the current link label, or -1. */
+    private int labelEnd = -1;
+
+    private int labelEndLength;
+
+    /** The end positions of the templates after an unclosed template, or null. */
+    private Map<Integer, Integer> templateEnds;
+
+    private boolean unclosedLink;
+
+    /** The end of the line of the last unclosed external link, before which external links are unclosed too. */
+    private int unclosedExternalLinkEnd = -1;
+
+    /**
+     * The positions of the end tokens found by the last searches, or -1 if there is no more.
+     * A token is searched again only when the position to search from passes it,
+     * so the text is scanned at most once for each token even if most of them are absent.
+     */
+    private final int[] endPositions = new int[END_TOKENS.length];
+
+    /** The positions which the last searches started from, or -1 if not searched yet. */
+    private final int[] endSearchStarts = new int[END_TOKENS.length];
+
+    private WikiTextConverter(final String text) {
+        this.text = text;
+        length = text.length();
+        buf = new StringBuilder(length);
+        Arrays.fill(endSearchStarts, -1);
+    }
+
+    /**
+     * Converts wiki formatted text to plain text.
+     *
+     * @param wikiText the wiki formatted text
+     * @return the plain text
+     */
+    public static String toPlainText(final String wikiText) {
+        if (wikiText == null || wikiText.isEmpty()) {
+            return wikiText;
+        }
+        return new WikiTextConverter(wikiText).convert();
+    }
+
+    private String convert() {
+        int i = 0;
+        while (i < length) {
+            if (labelEnd >= 0 && i >= labelEnd) {
+                if (i == labelEnd) {
+                    i += labelEndLength;
+                }
+                labelEnd = -1;
+                continue;
+            }
+            final char c = text.charAt(i);
+            switch (c) {
+            case '{':
+                i = convertTemplate(i);
+                break;
+            case '[':
+                i = convertLink(i);
+                break;
+            case '<':
+                i = convertTag(i, 1);
+                break;
+            case '&':
+                i = convertEntity(i);
+                break;
+            case '\'':
+                i = convertQuotes(i);
+                break;
+            default:
+                i = appendText(i);
+                break;
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Appends the characters up to the next markup.
+     */
+    private int appendText(final int start) {
+        final int end = labelEnd >= 0 ? labelEnd : length;
+        int i = start + 1;
+        while (i < end) {
+            final char c = text.charAt(i);
+            if (c == '{' || c == '[' || c == '<' || c == '&' || c == '\'') {
+                break;
+            }
+            i++;
+        }
+        buf.append(text, start, i);
+        return i;
+    }
+
+    private int convertTemplate(final int start) {
+        if (!startsWith(start, "{{")) {
+            buf.append('{');
+            return start + 1;
+        }
+        if (templateEnds != null) {
+            final Integer end = templateEnds.get(start);
+            if (end == null) {
+                buf.append("{{");
+                return start + 2;
+            }
+            buf.append(' ');
+            return end;
+        }
+        int depth = 2;
+        for (int i = start + 2; i < length; i++) {
+            final char c = text.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+                if (depth == 0) {
+                    buf.append(' ');
+                    return i + 1;
+                }
+            }
+        }
+        templateEnds = findTemplateEnds(start);
+        buf.append("{{");
+        return start + 2;
+    }
+
+    private Map<Integer, Integer> findTemplateEnds(final int start) {
+        final Map<Integer, Integer> ends = new HashMap<>();
+        // pairs of the start position and the depth before it
+        final Deque<int[]> starts = new ArrayDeque<>();
+        int depth = 0;
+        for (int i = start; i < length; i++) {
+            final char c = text.charAt(i);
+            if (c == '{') {
+                if (i + 1 < length && text.charAt(i + 1) == '{') {
+                    starts.push(new int[] { i, depth });
+                }
+                depth++;
+            } else if (c == '}') {
+                depth--;
+                while (!starts.isEmpty() && starts.peek()[1] >= depth) {
+                    ends.put(starts.pop()[0], i + 1);
+                }
+            }
+        }
+        return ends;
+    }
+
+    private int convertLink(final int start) {
+        if (startsWith(start, "[[")) {
+            return convertInternalLink(start);
+        }
+        if (labelEnd < 0) {
+            for (final String prefix : URL_PREFIXES) {
+                if (text.regionMatches(true, start + 1, prefix, 0, prefix.length())) {
+                    return convertExternalLink(start);
+                }
+            }
+        }
+        buf.append('[');
+        return start + 1;
+    }
+
+    private int convertInternalLink(final int start) {
+        if (unclosedLink) {
+            buf.append("[[");
+            return start + 2;
+        }
+        int depth = 1;
+        int pipe = -1;
+        boolean namespace = false;
+        int end = -1;
+        for (int i = start + 2; i < length - 1; i++) {
+            final char c = text.charAt(i);
+            if (c == '[' && text.charAt(i + 1) == '[') {
+                depth++;
+                i++;
+            } else if (c == ']' && text.charAt(i + 1) == ']') {
+                depth--;
+                if (depth == 0) {
+                    end = i;
+                    break;
+                }
+                i++;
+            } else if (depth == 1 && pipe < 0) {
+                if (c == '|') {
+                    pipe = i;
+                } else if (c == ':') {
+                    namespace = true;
+                }
+            }
+        }
+        if (end < 0) {
+            unclosedLink = true;
+            buf.append("[[");
+            return start + 2;
+        }
+        if (namespace) {
+            buf.append(' ');
+            return end + 2;
+        }
+        if (pipe < 0 || pipe + 1 == end) {
+            // [[target]] or [[target|]]
+            buf.append(text, start + 2, pipe < 0 ? end : pipe);
+            return end + 2;
+        }
+        if (labelEnd >= 0) {
+            // a link in a label is not valid, so it is kept as text
+            buf.append(text, pipe + 1, end);
+            return end + 2;
+        }
+        labelEnd = end;
+        labelEndLength = 2;
+        return pipe + 1;
+    }
+
+    private int convertExternalLink(final int start) {
+        if (start < unclosedExternalLinkEnd) {
+            buf.append('[');
+            return start + 1;
+        }
+        int space = -1;
+        int i = start + 1;
+        for (; i < length; i++) {
+            final char c = text.charAt(i);
+            if (c == ']') {
+                if (space < 0) {
+                    // [url] is shown as a number
+                    buf.append(' ');
+                    return i + 1;
+                }
+                labelEnd = i;
+                labelEndLength = 1;
+                return space + 1;
+            }
+            if (c == '\n') {
+                break;
+            }
+            if (space < 0 && (c == ' ' || c == '\t')) {
+                space = i;
+            }
+        }
+        unclosedExternalLinkEnd = i;
+        buf.append('[');
+        return start + 1;
+    }
+
+    /**
+     * Converts the tag which starts at the given position with "&lt;" or "&amp;lt;".
+     */
+    private int convertTag(final int start, final int openLength) {
+        int i = start + openLength;
+        if (startsWith(i, "!--")) {
+            // comments are removed up to the end of the text if unclosed
+            final int end = indexOfEnd(i + 3, COMMENT_END, COMMENT_END_ENTITY);
+            buf.append(' ');
+            return end < 0 ? length : end;
+        }
+        final boolean closing = i < length && text.charAt(i) == '/';
+        if (closing) {
+            i++;
+        }
+        final int nameStart = i;
+        while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+            i++;
+        }
+        if (i == nameStart || !Character.isLetter(text.charAt(nameStart))) {
+            buf.append('<');
+            return start + openLength;
+        }
+        final boolean ref = i - nameStart == 3 && text.regionMatches(true, nameStart, "ref", 0, 3);
+        final int limit = Math.min(length, i + MAX_TAG_LENGTH);
+        for (; i < limit; i++) {
+            final char c = text.charAt(i);
+            final int tagEnd;
+            if (c == '>') {
+                tagEnd = i + 1;
+            } else if (c == '&' && startsWith(i, "&gt;")) {
+                tagEnd = i + 4;
+            } else if (c == '<' || c == '\n') {
+                break;
+            } else {
+                continue;
+            }
+            buf.append(' ');
+            if (ref && !closing && text.charAt(i - 1) != '/') {
+                return skipRefContent(tagEnd);
+            }
+            return tagEnd;
+        }
+        buf.append('<');
+        return start + openLength;
+    }
+
+    private int skipRefContent(final int start) {
+        final int refEnd = indexOf(REF_END, start);
+        final int refEndEntity = indexOf(REF_END_ENTITY, start);
+        final int end;
+        if (refEnd < 0) {
+            end = refEndEntity;
+        } else if (refEndEntity < 0) {
+            end = refEnd;
+        } else {
+            end = Math.min(refEnd, refEndEntity);
+        }
+        if (end < 0) {
+            // the content is kept if the ref is unclosed
+            return start;
+        }
+        final int tagEnd = indexOfEnd(end, TAG_END, TAG_END_ENTITY);
+        return tagEnd < 0 ? length : tagEnd;
+    }
+
+    /**
+     * Returns the position after the first of the two end tokens found from the given position, or -1.
+     */
+    private int indexOfEnd(final int start, final int token1, final int token2) {
+        final int pos1 = indexOf(token1, start);
+        final int pos2 = indexOf(token2, start);
+        if (pos1 < 0) {
+            return pos2 < 0 ? -1 : pos2 + END_TOKENS[token2].length();
+        }
+        if (pos2 < 0 || pos1 < pos2) {
+            return pos1 + END_TOKENS[token1].length();
+        }
+        return pos2 + END_TOKENS[token2].length();
+    }
+
+    /**
+     * Returns the position of the end token found from the given position, or -1.
+     */
+    private int indexOf(final int token, final int start) {
+        final int searchStart = endSearchStarts[token];
+        final int pos = endPositions[token];
+        if (searchStart >= 0 && searchStart <= start && (pos < 0 || pos >= start)) {
+            return pos;
+        }
+        endSearchStarts[token] = start;
+        endPositions[token] = text.indexOf(END_TOKENS[token], start);
+        return endPositions[token];
+    }
+
+    private int convertEntity(final int start) {
+        if (startsWith(start, "&lt;")) {
+            return convertTag(start, 4);
+        }
+        int semicolon = start + 1;
+        final int limit = Math.min(length, start + MAX_ENTITY_LENGTH);
+        while (semicolon < limit && text.charAt(semicolon) != ';') {
+            semicolon++;
+        }
+        if (semicolon == limit) {
+            buf.append('&');
+            return start + 1;
+        }
+        final String name = text.substring(start + 1, semicolon);
+        switch (name) {
+        case "gt":
+            buf.append('>');
+            break;
+        case "amp":
+            buf.append('&');
+            break;
+        case "quot":
+            buf.append('"');
+            break;
+        case "apos":
+            buf.append('\'');
+            break;
+        case "nbsp":
+            buf.append(' ');
+            break;
+        default:
+            if (!appendCodePoint(name)) {
+                buf.append('&');
+                return start + 1;
+            }
+            break;
+        }
+        return semicolon + 1;
+    }
+
+    private boolean appendCodePoint(final String name) {
+        if (name.length() < 2 || name.charAt(0) != '#') {
+            return false;
+        }
+        try {
+            final int codePoint;
+            if (name.charAt(1) == 'x' || name.charAt(1) == 'X') {
+                codePoint = Integer.parseInt(name.substring(2), 16);
+            } else {
+                codePoint = Integer.parseInt(name.substring(1));
+            }
+            if (!Character.isValidCodePoint(codePoint)) {
+                return false;
+            }
+            buf.appendCodePoint(codePoint);
+            return true;
+        } catch (final NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private int convertQuotes(final int start) {
+        int i = start + 1;
+        while (i < length && text.charAt(i) == '\'') {
+            i++;
+        }
+        if (i - start == 1) {
+            buf.append('\'');
+        }
+        return i;
+    }
+
+    private boolean startsWith(final int pos, final String prefix) {
+        return text.startsWith(prefix, pos);
+    }
+}
@@ -16,6 +16,8 @@
 package org.codelibs.fess.ds.wikipedia.support;
 
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -31,14 +33,22 @@ public class WikiTextParser {
     private String wikiText = null;
     private ArrayList<String> pageCats = null;
     private ArrayList<String> pageLinks = null;
-    private boolean redirect = false;
+    // redirect, stub and disambiguation are scanned when asked, as most callers never use them
+    private Boolean redirect = null;
     private String redirectString = null;
-    private static Pattern redirectPattern = Pattern.compile("#REDIRECT\\s+\\[\\[(.*?)\\]\\]", Pattern.CASE_INSENSITIVE);
-    private boolean stub = false;
-    private boolean disambiguation = false;
-    private static Pattern stubPattern = Pattern.compile("\\-stub\\}\\}");
+    private static final Pattern redirectPattern = Pattern.compile("#REDIRECT\\s+\\[\\[(.*?)\\]\\]", Pattern.CASE_INSENSITIVE);
+    private Boolean stub = null;
+    private Boolean disambiguation = null;
+    private static final Pattern stubPattern = Pattern.compile("\\-stub\\}\\}");
     // the first letter of pages is case-insensitive
-    private static Pattern disambCatPattern = Pattern.compile("\\{\\{[Dd]isambig(uation)?\\}\\}");
+    private static final Pattern disambCatPattern = Pattern.compile("\\{\\{[Dd]isambig(uation)?\\}\\}");
+    private static final Pattern catPattern = Pattern.compile("\\[\\[[Cc]ategory:(.*?)\\]\\]", Pattern.MULTILINE);
+    private static final Pattern linkPattern = Pattern.compile("\\[\\[(.*?)\\]\\]", Pattern.MULTILINE);
+    private static final Pattern refPattern = Pattern.compile("<ref.*?>.*?</ref>");
+    private static final Pattern tagPattern = Pattern.compile("</?.*?>");
+    // patterns for getTranslatedTitle(), by language code
+    private static final Map<String, Pattern> translatedTitlePatterns = new ConcurrentHashMap<>();
+    private static final int MAX_TRANSLATED_TITLE_PATTERNS = 1000;
     private InfoBox infoBox = null;
 
     /**
@@ -48,17 +58,6 @@ public class WikiTextParser {
      */
     public WikiTextParser(final String wtext) {
         wikiText = wtext;
-        Matcher matcher = redirectPattern.matcher(wikiText);
-        if (matcher.find()) {
-            redirect = true;
-            if (matcher.groupCount() == 1) {
-                redirectString = matcher.group(1);
-            }
-        }
-        matcher = stubPattern.matcher(wikiText);
-        stub = matcher.find();
-        matcher = disambCatPattern.matcher(wikiText);
-        disambiguation = matcher.find();
     }
 
     /**
@@ -67,6 +66,9 @@ public class WikiTextParser {
      * @return true if this page is a redirect, false otherwise
      */
     public boolean isRedirect() {
+        if (redirect == null) {
+            parseRedirect();
+        }
         return redirect;
     }
 
@@ -76,6 +78,9 @@ public class WikiTextParser {
      * @return true if this page is a stub, false otherwise
      */
     public boolean isStub() {
+        if (stub == null) {
+            stub = stubPattern.matcher(wikiText).find();
+        }
         return stub;
     }
 
@@ -85,9 +90,24 @@ public class WikiTextParser {
      * @return the redirect target string, or null if not a redirect
      */
     public String getRedirectText() {
+        if (redirect == null) {
+            parseRedirect();
+        }
         return redirectString;
     }
 
+    private void parseRedirect() {
+        final Matcher matcher = redirectPattern.matcher(wikiText);
+        if (matcher.find()) {
+            if (matcher.groupCount() == 1) {
+                redirectString = matcher.group(1);
+            }
+            redirect = true;
+        } else {
+            redirect = false;
+        }
+    }
+
     /**
      * Gets the raw wiki text content.
      *
@@ -123,48 +143,39 @@ public class WikiTextParser {
 
     private void parseCategories() {
         pageCats = new ArrayList<>();
-        final Pattern catPattern = Pattern.compile("\\[\\[[Cc]ategory:(.*?)\\]\\]", Pattern.MULTILINE);
         final Matcher matcher = catPattern.matcher(wikiText);
         while (matcher.find()) {
-            final String[] temp = matcher.group(1).split("\\|");
-            pageCats.add(temp[0]);
+            pageCats.add(beforePipe(matcher.group(1)));
         }
     }
 
     private void parseLinks() {
         pageLinks = new ArrayList<>();
 
-        final Pattern catPattern = Pattern.compile("\\[\\[(.*?)\\]\\]", Pattern.MULTILINE);
-        final Matcher matcher = catPattern.matcher(wikiText);
+        final Matcher matcher = linkPattern.matcher(wikiText);
         while (matcher.find()) {
-            final String[] temp = matcher.group(1).split("\\|");
-            if (temp == null || temp.length == 0) {
-                continue;
-            }
-            final String link = temp[0];
-            if (!link.contains(":")) {
+            final String link = beforePipe(matcher.group(1));
+            // skips empty links such as [[|x]]
+            if (!link.isEmpty() && link.indexOf(':') < 0) {
                 pageLinks.add(link);
             }
         }
     }
 
+    private static String beforePipe(final String value) {
+        final int pos = value.indexOf('|');
+        return pos < 0 ? value : value.substring(0, pos);
+    }
+
     /**
      * Extracts and returns the plain text content from the wiki text, removing
      * wiki markup, HTML tags, and other non-text elements.
      *
      * @return The plain text representation of the wiki content.
+     * @see WikiTextConverter
      */
     public String getPlainText() {
-        String text = wikiText.replace("&gt;", ">");
-        text = text.replace("&lt;", "<");
-        text = text.replaceAll("<ref>.*?</ref>", " ");
-        text = text.replaceAll("</?.*?>", " ");
-        text = text.replaceAll("\\{\\{.*?\\}\\}", " ");
-        text = text.replaceAll("\\[\\[.*?:.*?\\]\\]", " ");
-        text = text.replaceAll("\\[\\[(.*?)\\]\\]", "$1");
-        text = text.replaceAll("\\s(.*?)\\|(\\w+\\s)", " $2");
-        text = text.replaceAll("\\[.*?\\]", " ");
-        return text.replaceAll("\\'+", "");
+        return WikiTextConverter.toPlainText(wikiText);
     }
 
     /**
@@ -208,8 +219,8 @@ public class WikiTextParser {
         // strip any html formatting
         infoBoxText = infoBoxText.replace("&gt;", ">");
         infoBoxText = infoBoxText.replace("&lt;", "<");
-        infoBoxText = infoBoxText.replaceAll("<ref.*?>.*?</ref>", " ");
-        infoBoxText = infoBoxText.replaceAll("</?.*?>", " ");
+        infoBoxText = refPattern.matcher(infoBoxText).replaceAll(" ");
+        infoBoxText = tagPattern.matcher(infoBoxText).replaceAll(" ");
         return new InfoBox(infoBoxText);
     }
 
@@ -245,6 +256,9 @@ public class WikiTextParser {
      * @return true if this page is a disambiguation page, false otherwise
      */
     public boolean isDisambiguationPage() {
+        if (disambiguation == null) {
+            disambiguation = disambCatPattern.matcher(wikiText).find();
+        }
         return disambiguation;
     }
 
@@ -255,7 +269,13 @@ public class WikiTextParser {
      * @return the translated title for the given language, or null if not found
      */
     public String getTranslatedTitle(final String languageCode) {
-        final Pattern pattern = Pattern.compile("^\\[\\[" + languageCode + ":(.*?)\\]\\]$", Pattern.MULTILINE);
+        Pattern pattern = translatedTitlePatterns.get(languageCode);
+        if (pattern == null) {
+            pattern = Pattern.compile("^\\[\\[" + languageCode + ":(.*?)\\]\\]$", Pattern.MULTILINE);
+            if (translatedTitlePatterns.size() < MAX_TRANSLATED_TITLE_PATTERNS) {
+                translatedTitlePatterns.put(languageCode, pattern);
+            }
+        }
         final Matcher matcher = pattern.matcher(wikiText);
         if (matcher.find()) {
             return matcher.group(1);
@@ -16,13 +16,25 @@
 package org.codelibs.fess.ds.wikipedia.support;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
 import java.net.URL;
-import java.util.zip.GZIPInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.codelibs.fess.ds.wikipedia.bzip2.CBZip2InputStream;
+import org.codelibs.fess.ds.wikipedia.bzip2.MultiStreamBZip2InputStream;
+import org.codelibs.fess.ds.wikipedia.decompressor.DumpDecompressors;
 import org.xml.sax.InputSource;
 
 /**
@@ -34,10 +46,25 @@ import org.xml.sax.InputSource;
  */
 public abstract class WikiXMLParser {
 
+    private static final Logger logger = LogManager.getLogger(WikiXMLParser.class);
+
+    private static final byte[] END_OF_DUMP = "</mediawiki>\n".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] EMPTY_DUMP = "<mediawiki>\n</mediawiki>\n".getBytes(StandardCharsets.UTF_8);
+
     private URL wikiXMLFile = null;
     /** The current page being processed */
     protected WikiPage currentPage = null;
     private BufferedReader br;
+    private InputStream in;
+    private URL multiStreamIndexFile = null;
+    private int decompressThreadSize = 1;
+    private String decompressor = DumpDecompressors.AUTO;
+    private PageFilter pageFilter = null;
+    private long startPageId = -1;
+    private long endPageId = -1;
+    private long startOffset = -1;
+    private long endOffset = -1;
 
     /**
      * Constructs a new WikiXMLParser with the specified file URL.
@@ -71,24 +98,225 @@ public abstract class WikiXMLParser {
 
     /**
      * Creates an InputSource from the Wikipedia XML file, handling different compression formats.
+     * The compression format is detected by the magic bytes of the file.
      *
      * @return An InputSource created from wikiXMLFile
      * @throws IOException if there is an error reading the file
      */
     protected InputSource getInputSource() throws IOException {
-        if (wikiXMLFile.toExternalForm().endsWith(".gz")) {
-            br = new BufferedReader(new InputStreamReader(new GZIPInputStream(wikiXMLFile.openStream()), "UTF-8"));
-        } else if (wikiXMLFile.toExternalForm().endsWith(".bz2")) {
-            final InputStream fis = wikiXMLFile.openStream();
-            final byte[] ignoreBytes = new byte[2];
-            fis.read(ignoreBytes); //"B", "Z" bytes from commandline tools
-            final CBZip2InputStream cbZip2InputStream = new CBZip2InputStream(fis);
-            br = new BufferedReader(new InputStreamReader(cbZip2InputStream, "UTF-8"));
+        br = new BufferedReader(new InputStreamReader(getInputStream(), "UTF-8"));
+
+        return new InputSource(br);
+    }
+
+    /**
+     * Opens the decompressed byte stream of the Wikipedia XML file.
+     * The compression format is detected by the magic bytes of the file.
+     *
+     * @return the decompressed XML stream
+     * @throws IOException if there is an error reading the file
+     */
+    protected InputStream getInputStream() throws IOException {
+        if (multiStreamIndexFile != null) {
+            final MultiStreamIndex index = MultiStreamIndex.load(multiStreamIndexFile);
+            final long[] offsets = index.getOffsets();
+            int firstStream = 0;
+            int lastStream = offsets.length - 1;
+            // the first stream has the site info when it is not in the index
+            if (offsets.length > 0 && offsets[0] > 0) {
+                if (startPageId >= 0) {
+                    firstStream = Math.max(firstStream, index.findStream(startPageId));
+                }
+                if (startOffset >= 0) {
+                    firstStream = Math.max(firstStream, index.findStreamAt(startOffset));
+                }
+            }
+            if (endPageId >= 0) {
+                lastStream = Math.min(lastStream, index.findStream(endPageId));
+            }
+            if (endOffset >= 0) {
+                lastStream = Math.min(lastStream, index.findStreamAt(endOffset) - 1);
+            }
+            if (offsets.length > 0 && firstStream > lastStream) {
+                in = openFirstStream(offsets);
+            } else if (firstStream > 0 || lastStream < offsets.length - 1) {
+                in = openStreams(offsets, firstStream, lastStream);
+            } else {
+                in = new MultiStreamBZip2InputStream(wikiXMLFile.openStream(), offsets, decompressThreadSize);
+            }
         } else {
-            br = new BufferedReader(new InputStreamReader(wikiXMLFile.openStream(), "UTF-8"));
+            in = new DumpDecompressors().open(wikiXMLFile.openStream(), decompressor, decompressThreadSize);
         }
+        return in;
+    }
 
-        return new InputSource(br);
+    /**
+     * Opens the streams of a multistream dump from firstStream to lastStream.
+     * The first stream of the dump, which has the root element and the site info, is decompressed before firstStream,
+     * and the end tag of the root element is appended after lastStream, so the parsers read a well-formed dump.
+     */
+    private InputStream openStreams(final long[] offsets, final int firstStream, final int lastStream) throws IOException {
+        final InputStream source = wikiXMLFile.openStream();
+        try {
+            final List<InputStream> parts = new ArrayList<>(3);
+            long position = 0;
+            if (firstStream > 0) {
+                parts.add(new ByteArrayInputStream(readFirstStream(source, offsets[0])));
+                skipFully(source, offsets[firstStream] - offsets[0]);
+                position = offsets[firstStream];
+                logger.info("Start reading {} at stream #{} (offset {}).", wikiXMLFile, firstStream, position);
+            }
+            if (lastStream < offsets.length - 1) {
+                final long endOffset = offsets[lastStream + 1];
+                logger.info("Stop reading {} before stream #{} (offset {}).", wikiXMLFile, lastStream + 1, endOffset);
+                // the last stream is read to the end of the bounded source
+                parts.add(new MultiStreamBZip2InputStream(new BoundedInputStream(source, endOffset - position), position,
+                        Arrays.copyOf(offsets, lastStream + 1), decompressThreadSize));
+                parts.add(new ByteArrayInputStream(END_OF_DUMP));
+            } else {
+                parts.add(new MultiStreamBZip2InputStream(source, position, offsets, decompressThreadSize));
+            }
+            return new SequenceInputStream(Collections.enumeration(parts));
+        } catch (final IOException | RuntimeException e) {
+            source.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the first stream of a multistream dump followed by the end tag of the root element,
+     * so the parsers read a well-formed dump without pages when no stream is in the range to read.
+     * If the first stream has pages, an empty root element is read instead.
+     */
+    private InputStream openFirstStream(final long[] offsets) throws IOException {
+        logger.info("No stream of {} is in the range to read.", wikiXMLFile);
+        if (offsets[0] == 0) {
+            return new ByteArrayInputStream(EMPTY_DUMP);
+        }
+        try (InputStream source = wikiXMLFile.openStream()) {
+            return new SequenceInputStream(new ByteArrayInputStream(readFirstStream(source, offsets[0])),
+                    new ByteArrayInputStream(END_OF_DUMP));
+        }
+    }
+
+    private static byte[] readFirstStream(final InputStream source, final long length) throws IOException {
+        final byte[] header = source.readNBytes((int) length);
+        if (header.length < length || header.length < 2 || header[0] != 'B' || header[1] != 'Z') {
+            throw new IOException("The first stream is not BZip2 formatted.");
+        }
+        try (InputStream headerIn = new CBZip2InputStream(new ByteArrayInputStream(header, 2, header.length - 2), true)) {
+            return headerIn.readAllBytes();
+        }
+    }
+
+    private static void skipFully(final InputStream source, final long length) throws IOException {
+        // skip() of a file seeks without reading the skipped streams
+        long remaining = length;
+        while (remaining > 0) {
+            final long skipped = source.skip(remaining);
+            if (skipped > 0) {
+                remaining -= skipped;
+            } else if (source.read() >= 0) {
+                remaining--;
+            } else {
+                throw new EOFException("unexpected end of stream at " + (length - remaining));
+            }
+        }
+    }
+
+    /**
+     * Sets the id of the first page to read.
+     * With a multistream index, the dump is read from the stream containing the page,
+     * assuming that the page ids are ascending. The pages before it in the stream are not skipped by this setting,
+     * so set the same id to {@link PageFilter#setMinPageId(long)}.
+     *
+     * @param startPageId the id of the first page, or -1 to read from the beginning
+     */
+    public void setStartPageId(final long startPageId) {
+        this.startPageId = startPageId;
+    }
+
+    /**
+     * Sets the id of the last page to read.
+     * With a multistream index, the dump is read to the end of the stream containing the page,
+     * assuming that the page ids are ascending. The pages after it in the stream are not skipped by this setting,
+     * so set the same id to {@link PageFilter#setMaxPageId(long)}.
+     *
+     * @param endPageId the id of the last page, or -1 to read to the end
+     */
+    public void setEndPageId(final long endPageId) {
+        this.endPageId = endPageId;
+    }
+
+    /**
+     * Sets the byte offset from which to read a multistream dump.
+     * The dump is read from the first stream starting at or after the offset.
+     * This setting is ignored without a multistream index.
+     *
+     * @param startOffset the byte offset, or -1 to read from the beginning
+     */
+    public void setStartOffset(final long startOffset) {
+        this.startOffset = startOffset;
+    }
+
+    /**
+     * Sets the byte offset at which to stop reading a multistream dump.
+     * The dump is read to the end of the last stream starting before the offset,
+     * so consecutive byte ranges read each stream exactly once.
+     * This setting is ignored without a multistream index.
+     *
+     * @param endOffset the byte offset, or -1 to read to the end
+     */
+    public void setEndOffset(final long endOffset) {
+        this.endOffset = endOffset;
+    }
+
+    /**
+     * Sets the index file of a pages-articles-multistream dump.
+     * If set, the BZip2 streams of the dump are decompressed in parallel.
+     *
+     * @param multiStreamIndexFile the URL of the multistream index file
+     */
+    public void setMultiStreamIndexFile(final URL multiStreamIndexFile) {
+        this.multiStreamIndexFile = multiStreamIndexFile;
+    }
+
+    /**
+     * Sets the number of threads to decompress a BZip2 dump.
+     * If more than one, the streams of a multistream dump or the blocks
+     * of a single stream dump are decompressed in parallel.
+     *
+     * @param decompressThreadSize the number of decompression threads
+     */
+    public void setDecompressThreadSize(final int decompressThreadSize) {
+        this.decompressThreadSize = decompressThreadSize;
+    }
+
+    /**
+     * Sets the name of the decompressor for the dump.
+     *
+     * @param decompressor the decompressor name, "auto" to detect the format by the magic bytes, or "none"
+     */
+    public void setDecompressor(final String decompressor) {
+        this.decompressor = decompressor;
+    }
+
+    /**
+     * Sets the filter to skip pages before their text is read.
+     *
+     * @param pageFilter the page filter, or null to read all pages
+     */
+    public void setPageFilter(final PageFilter pageFilter) {
+        this.pageFilter = pageFilter;
+    }
+
+    /**
+     * Returns the page filter.
+     *
+     * @return the page filter, or null if not set
+     */
+    protected PageFilter getPageFilter() {
+        return pageFilter;
     }
 
     /**
@@ -108,6 +336,57 @@ public abstract class WikiXMLParser {
     public void close() throws IOException {
         if (br != null) {
             br.close();
+        } else if (in != null) {
+            in.close();
+        }
+    }
+
+    /**
+     * An input stream which ends after the given number of bytes of the source.
+     */
+    private static class BoundedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        BoundedInputStream(final InputStream in, final long length) {
+            super(in);
+            remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
         }
     }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A base class for parsers which read pages lazily from the dump
+ * while the caller iterates, so only the current page is kept in memory.
+ *
+ * @author CodeLibs
+ */
+public abstract class WikiXMLPullParser extends WikiXMLParser {
+
+    private static final Logger logger = LogManager.getLogger(WikiXMLPullParser.class);
+
+    private PageCallbackHandler pageHandler = null;
+
+    /**
+     * Constructs a new WikiXMLPullParser with the specified file URL.
+     *
+     * @param fileName the URL of the Wikipedia XML file to parse
+     */
+    protected WikiXMLPullParser(final URL fileName) {
+        super(fileName);
+    }
+
+    @Override
+    public void setPageCallback(final PageCallbackHandler handler) {
+        pageHandler = handler;
+    }
+
+    /**
+     * Reads all pages and passes them to the page callback.
+     */
+    @Override
+    public void parse() {
+        final Iterator<WikiPage> pages = iterator();
+        while (pages.hasNext()) {
+            pageHandler.process(pages.next());
+        }
+    }
+
+    /**
+     * Opens the dump and returns a page iterator which reads one page per {@link WikiPageIterator#nextPage()}.
+     *
+     * @return an iterator over the pages in the dump
+     */
+    @Override
+    public WikiPageIterator getIterator() {
+        return new WikiPageIterator(iterator());
+    }
+
+    /**
+     * Opens the dump and returns an iterator which reads one page per {@link Iterator#next()}.
+     * The dump is closed when the iterator is exhausted or {@link #close()} is called.
+     *
+     * @return an iterator over the pages in the dump
+     */
+    public abstract Iterator<WikiPage> iterator();
+
+    /**
+     * Opens the dump and returns a sequential stream of its pages.
+     * Closing the stream closes the dump.
+     *
+     * @return a stream of the pages in the dump
+     */
+    public Stream<WikiPage> stream() {
+        final Spliterator<WikiPage> spliterator = Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                close();
+            } catch (final IOException e) {
+                logger.warn("Failed to close the dump.", e);
+            }
+        });
+    }
+}
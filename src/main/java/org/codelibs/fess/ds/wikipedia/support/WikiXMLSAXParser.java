@@ -76,7 +76,7 @@ public class WikiXMLSAXParser extends WikiXMLParser {
             parser.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, StringUtil.EMPTY);
             parser.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, StringUtil.EMPTY);
             parser.setProperty(TOTAL_ENTITY_SIZE_LIMIT, totalEntitySizeLimit);
-            parser.parse(getInputSource(), new SAXPageCallbackHandler(pageHandler));
+            parser.parse(getInputSource(), new SAXPageCallbackHandler(pageHandler, getPageFilter()));
         } catch (ParserConfigurationException | IOException | SAXException e) {
             throw new DataStoreException("Could not parse wikipedia file.", e);
         }
@@ -0,0 +1,512 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.core.lang.StringUtil;
+import org.codelibs.fess.exception.DataStoreException;
+
+/**
+ * A byte level scanner for MediaWiki XML export dumps.
+ * <p>
+ * Instead of a general XML parser, this scanner relies on the fixed layout of the export
+ * schema: pages are delimited by &lt;page&gt; and &lt;/page&gt;, and markup characters in
+ * the character data are always escaped. Only the fields of {@link WikiPage}
+ * are decoded from UTF-8, and other elements are skipped as bytes.
+ * The text of a page rejected by the page filter is not decoded.
+ * DTDs, CDATA sections and comments are not supported.
+ * </p>
+ *
+ * @author CodeLibs
+ */
+public class WikiXMLScanner extends WikiXMLPullParser {
+
+    private static final Logger logger = LogManager.getLogger(WikiXMLScanner.class);
+
+    private static final byte[] PAGE_START = bytes("<page>");
+
+    private static final byte[] PAGE_END = bytes("</page>");
+
+    private static final byte[] REVISION_START = bytes("<revision>");
+
+    private static final int INITIAL_BUFFER_SIZE = 1024 * 1024;
+
+    private int maxPageSize = 512 * 1024 * 1024;
+
+    /**
+     * Constructs a new WikiXMLScanner with the specified file URL.
+     *
+     * @param fileName the URL of the Wikipedia XML file to parse
+     */
+    public WikiXMLScanner(final URL fileName) {
+        super(fileName);
+    }
+
+    @Override
+    public Iterator<WikiPage> iterator() {
+        try {
+            return new PageIterator(getInputStream());
+        } catch (final IOException e) {
+            throw new DataStoreException("Could not parse wikipedia file.", e);
+        }
+    }
+
+    /**
+     * Sets the maximum size of a page element in bytes.
+     *
+     * @param maxPageSize the maximum page size
+     */
+    public void setMaxPageSize(final int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    private class PageIterator implements Iterator<WikiPage> {
+
+        private final InputStream in;
+
+        private byte[] buf = new byte[INITIAL_BUFFER_SIZE];
+
+        private int pos;
+
+        private int limit;
+
+        private boolean eof;
+
+        private int contentEnd;
+
+        private WikiPage nextPage;
+
+        private boolean finished;
+
+        PageIterator(final InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (nextPage == null && !finished) {
+                try {
+                    nextPage = readPage();
+                } catch (final IOException e) {
+                    finish();
+                    throw new DataStoreException("Could not parse wikipedia file.", e);
+                }
+                if (nextPage == null) {
+                    finish();
+                }
+            }
+            return nextPage != null;
+        }
+
+        @Override
+        public WikiPage next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final WikiPage page = nextPage;
+            nextPage = null;
+            notifyPage(page);
+            return page;
+        }
+
+        private void finish() {
+            finished = true;
+            buf = null;
+            try {
+                close();
+            } catch (final IOException e) {
+                logger.warn("Failed to close the dump.", e);
+            }
+        }
+
+        private WikiPage readPage() throws IOException {
+            while (true) {
+                final int start = find(PAGE_START, pos);
+                if (start < 0) {
+                    return null;
+                }
+                pos = start;
+                final int end = find(PAGE_END, pos + PAGE_START.length);
+                if (end < 0) {
+                    throw new IOException("Unexpected end of the dump in a page.");
+                }
+                final WikiPage page = createPage(pos + PAGE_START.length, end);
+                pos = end + PAGE_END.length;
+                if (page != null) {
+                    return page;
+                }
+            }
+        }
+
+        /**
+         * Finds the pattern from the offset, reading more bytes while it is not found.
+         * The bytes before {@link #pos} are discarded when the buffer is refilled,
+         * so the returned index is relative to the compacted buffer.
+         */
+        private int find(final byte[] pattern, final int offset) throws IOException {
+            int from = offset;
+            while (true) {
+                final int index = indexOf(buf, pattern, from, limit);
+                if (index >= 0) {
+                    return index;
+                }
+                if (eof) {
+                    return -1;
+                }
+                from = Math.max(from, limit - pattern.length + 1) - pos;
+                fill();
+            }
+        }
+
+        private void fill() throws IOException {
+            if (pos > 0) {
+                System.arraycopy(buf, pos, buf, 0, limit - pos);
+                limit -= pos;
+                pos = 0;
+            }
+            if (limit == buf.length) {
+                if (buf.length >= maxPageSize) {
+                    throw new IOException("The page is larger than " + maxPageSize + " bytes.");
+                }
+                final byte[] newBuf = new byte[(int) Math.min((long) buf.length * 2, maxPageSize)];
+                System.arraycopy(buf, 0, newBuf, 0, limit);
+                buf = newBuf;
+            }
+            final int n = in.read(buf, limit, buf.length - limit);
+            if (n < 0) {
+                eof = true;
+            } else {
+                limit += n;
+            }
+        }
+
+        /**
+         * Creates a page from the bytes in the range, or returns null if the page filter rejects it.
+         */
+        private WikiPage createPage(final int start, final int end) throws IOException {
+            final WikiPage page = new WikiPage();
+            int revisionStart = indexOf(buf, REVISION_START, start, end);
+            final int headerEnd = revisionStart < 0 ? end : revisionStart;
+
+            final String title = getElementText("title", start, headerEnd);
+            page.setTitle(title != null ? title : StringUtil.EMPTY);
+            final String id = getElementText("id", start, headerEnd);
+            if (StringUtil.isNotBlank(id)) {
+                page.setId(id.trim());
+            }
+            page.setNamespace(PageFilter.parseNamespace(getElementText("ns", start, headerEnd)));
+            page.setRedirectTitle(getAttributeValue("redirect", "title", start, headerEnd));
+
+            // a history dump has several revisions, and the latest one is used
+            String timestamp = null;
+            String model = null;
+            String format = null;
+            String revisionId = null;
+            String parentId = null;
+            String sha1 = null;
+            int textStart = -1;
+            int textEnd = -1;
+            while (revisionStart >= 0) {
+                final int contentStart = findContent("text", revisionStart, end);
+                final int revisionTextEnd = contentEnd;
+                final int fieldEnd = contentStart < 0 ? end : contentStart;
+                revisionId = getElementText("id", revisionStart, fieldEnd);
+                parentId = getElementText("parentid", revisionStart, fieldEnd);
+                final String revisionTimestamp = getElementText("timestamp", revisionStart, fieldEnd);
+                if (StringUtil.isNotBlank(revisionTimestamp)) {
+                    timestamp = revisionTimestamp;
+                }
+                final String revisionModel = getElementText("model", revisionStart, fieldEnd);
+                if (StringUtil.isNotBlank(revisionModel)) {
+                    model = revisionModel;
+                }
+                final String revisionFormat = getElementText("format", revisionStart, fieldEnd);
+                if (StringUtil.isNotBlank(revisionFormat)) {
+                    format = revisionFormat;
+                }
+                if (contentStart < 0) {
+                    sha1 = getElementText("sha1", revisionStart, end);
+                    break;
+                }
+                textStart = contentStart;
+                textEnd = revisionTextEnd;
+                revisionStart = indexOf(buf, REVISION_START, revisionTextEnd, end);
+                sha1 = getElementText("sha1", revisionTextEnd, revisionStart < 0 ? end : revisionStart);
+            }
+
+            if (timestamp != null) {
+                final long date = SAXPageCallbackHandler.parseTimestampMillis(timestamp);
+                if (date != WikiPage.NO_TIMESTAMP) {
+                    page.setTimestampMillis(date);
+                }
+            }
+            if (model != null) {
+                page.setModel(model.trim());
+            }
+            if (format != null) {
+                page.setFormat(format.trim());
+            }
+            if (StringUtil.isNotBlank(revisionId)) {
+                page.setRevisionId(revisionId.trim());
+            }
+            if (StringUtil.isNotBlank(parentId)) {
+                page.setParentId(parentId.trim());
+            }
+            if (StringUtil.isNotBlank(sha1)) {
+                page.setSha1(sha1.trim());
+            }
+            final PageFilter pageFilter = getPageFilter();
+            if (pageFilter != null && !pageFilter.accept(page)) {
+                return null;
+            }
+            page.setWikiText(textStart < 0 ? StringUtil.EMPTY : decode(buf, textStart, textEnd));
+            return page;
+        }
+
+        /**
+         * Returns the decoded content of the first element with the name in the range,
+         * or null if it is not found.
+         */
+        private String getElementText(final String name, final int start, final int end) throws IOException {
+            final int contentStart = findContent(name, start, end);
+            if (contentStart < 0) {
+                return null;
+            }
+            return decode(buf, contentStart, contentEnd);
+        }
+
+        /**
+         * Returns the decoded value of the attribute of the first element with the name in the range,
+         * or null if the element is not found. An empty string is returned if the attribute is missing.
+         */
+        private String getAttributeValue(final String name, final String attribute, final int start, final int end) throws IOException {
+            final int tagStart = findTag(name, start, end);
+            if (tagStart < 0) {
+                return null;
+            }
+            final int tagEnd = indexOf(buf, (byte) '>', tagStart, end);
+            if (tagEnd < 0) {
+                throw new IOException("Invalid <" + name + "> element.");
+            }
+            final byte[] prefix = bytes(" " + attribute + "=\"");
+            final int valueStart = indexOf(buf, prefix, tagStart, tagEnd);
+            if (valueStart < 0) {
+                return StringUtil.EMPTY;
+            }
+            final int valueEnd = indexOf(buf, (byte) '"', valueStart + prefix.length, tagEnd);
+            if (valueEnd < 0) {
+                throw new IOException("Invalid <" + name + "> element.");
+            }
+            return decode(buf, valueStart + prefix.length, valueEnd);
+        }
+
+        /**
+         * Returns the index of the first start tag with the name in the range, or -1 if it is not found.
+         */
+        private int findTag(final String name, final int start, final int end) {
+            final int nameLength = name.length();
+            int i = start;
+            while (true) {
+                i = indexOf(buf, (byte) '<', i, end);
+                if (i < 0 || i + nameLength + 1 >= end) {
+                    return -1;
+                }
+                if (matchesName(name, i + 1)) {
+                    final byte next = buf[i + 1 + nameLength];
+                    if (next == '>' || next == ' ' || next == '/' || next == '\t' || next == '\n' || next == '\r') {
+                        return i;
+                    }
+                }
+                i++;
+            }
+        }
+
+        /**
+         * Finds the first element with the name in the range, and returns the start index of its content.
+         * The end index of the content is stored in {@link #contentEnd}.
+         * The element may have attributes or be empty.
+         */
+        private int findContent(final String name, final int start, final int end) throws IOException {
+            final int nameLength = name.length();
+            final int i = findTag(name, start, end);
+            if (i < 0) {
+                return -1;
+            }
+            final int tagEnd = indexOf(buf, (byte) '>', i + 1 + nameLength, end);
+            if (tagEnd < 0) {
+                throw new IOException("Invalid <" + name + "> element.");
+            }
+            if (buf[tagEnd - 1] == '/') {
+                contentEnd = tagEnd + 1;
+                return contentEnd;
+            }
+            final int contentStart = tagEnd + 1;
+            contentEnd = indexOf(buf, (byte) '<', contentStart, end);
+            if (contentEnd < 0 || contentEnd + 1 >= end || buf[contentEnd + 1] != '/') {
+                throw new IOException("Invalid <" + name + "> element.");
+            }
+            return contentStart;
+        }
+
+        private boolean matchesName(final String name, final int offset) {
+            for (int i = 0; i < name.length(); i++) {
+                if (buf[offset + i] != name.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Decodes UTF-8 character data, resolving entity references and normalizing line breaks.
+     * The references are resolved in place because a reference is never shorter than
+     * its UTF-8 encoding, so the bytes in the range are overwritten.
+     *
+     * @param buf the buffer
+     * @param start the start index (inclusive)
+     * @param end the end index (exclusive)
+     * @return the decoded string
+     * @throws IOException if an entity reference is invalid
+     */
+    static String decode(final byte[] buf, final int start, final int end) throws IOException {
+        int i = indexOfReference(buf, start, end);
+        int n = i;
+        while (i < end) {
+            if (buf[i] == '&') {
+                final int semicolon = indexOf(buf, (byte) ';', i + 1, end);
+                if (semicolon < 0) {
+                    throw new IOException("Invalid entity reference at " + (i - start));
+                }
+                n = resolveEntity(buf, n, i + 1, semicolon);
+                i = semicolon + 1;
+            } else {
+                buf[n++] = '\n';
+                i++;
+                if (i < end && buf[i] == '\n') {
+                    i++;
+                }
+            }
+            final int next = indexOfReference(buf, i, end);
+            System.arraycopy(buf, i, buf, n, next - i);
+            n += next - i;
+            i = next;
+        }
+        return new String(buf, start, n - start, StandardCharsets.UTF_8);
+    }
+
+    private static int indexOfReference(final byte[] buf, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            final byte b = buf[i];
+            if (b == '&' || b == '\r') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Writes the UTF-8 bytes of the entity reference between start and end to the position.
+     */
+    private static int resolveEntity(final byte[] buf, final int pos, final int start, final int end) throws IOException {
+        final int length = end - start;
+        if (length > 1 && buf[start] == '#') {
+            final boolean hex = buf[start + 1] == 'x';
+            final int digitStart = hex ? start + 2 : start + 1;
+            int codePoint = 0;
+            for (int i = digitStart; i < end; i++) {
+                final int digit = Character.digit(buf[i], hex ? 16 : 10);
+                if (digit < 0 || codePoint > Character.MAX_CODE_POINT) {
+                    throw new IOException("Invalid character reference: " + new String(buf, start, length, StandardCharsets.UTF_8));
+                }
+                codePoint = codePoint * (hex ? 16 : 10) + digit;
+            }
+            if (digitStart == end || !Character.isValidCodePoint(codePoint)) {
+                throw new IOException("Invalid character reference: " + new String(buf, start, length, StandardCharsets.UTF_8));
+            }
+            int n = pos;
+            if (codePoint < 0x80) {
+                buf[n++] = (byte) codePoint;
+            } else if (codePoint < 0x800) {
+                buf[n++] = (byte) (0xc0 | codePoint >> 6);
+                buf[n++] = (byte) (0x80 | codePoint & 0x3f);
+            } else if (codePoint < 0x10000) {
+                buf[n++] = (byte) (0xe0 | codePoint >> 12);
+                buf[n++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                buf[n++] = (byte) (0x80 | codePoint & 0x3f);
+            } else {
+                buf[n++] = (byte) (0xf0 | codePoint >> 18);
+                buf[n++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                buf[n++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                buf[n++] = (byte) (0x80 | codePoint & 0x3f);
+            }
+            return n;
+        }
+        if (length == 3 && buf[start] == 'a' && buf[start + 1] == 'm' && buf[start + 2] == 'p') {
+            buf[pos] = '&';
+        } else if (length == 2 && buf[start] == 'l' && buf[start + 1] == 't') {
+            buf[pos] = '<';
+        } else if (length == 2 && buf[start] == 'g' && buf[start + 1] == 't') {
+            buf[pos] = '>';
+        } else if (length == 4 && buf[start] == 'q' && buf[start + 1] == 'u' && buf[start + 2] == 'o' && buf[start + 3] == 't') {
+            buf[pos] = '"';
+        } else if (length == 4 && buf[start] == 'a' && buf[start + 1] == 'p' && buf[start + 2] == 'o' && buf[start + 3] == 's') {
+            buf[pos] = '\'';
+        } else {
+            throw new IOException("Unknown entity reference: " + new String(buf, start, length, StandardCharsets.UTF_8));
+        }
+        return pos + 1;
+    }
+
+    private static int indexOf(final byte[] buf, final byte b, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(final byte[] buf, final byte[] pattern, final int start, final int end) {
+        final byte first = pattern[0];
+        final int max = end - pattern.length;
+        for (int i = start; i <= max; i++) {
+            if (buf[i] != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < pattern.length && buf[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] bytes(final String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.core.lang.StringUtil;
+import org.codelibs.fess.exception.DataStoreException;
+
+/**
+ * A pull based parser for Wikipedia XML dumps using StAX.
+ *
+ * @author CodeLibs
+ */
+public class WikiXMLStAXParser extends WikiXMLPullParser {
+
+    private static final Logger logger = LogManager.getLogger(WikiXMLStAXParser.class);
+
+    private static final String TOTAL_ENTITY_SIZE_LIMIT = "http://www.oracle.com/xml/jaxp/properties/totalEntitySizeLimit";
+
+    private int totalEntitySizeLimit = 50000000;
+
+    /**
+     * Constructs a new WikiXMLStAXParser with the specified file URL.
+     *
+     * @param fileName the URL of the Wikipedia XML file to parse
+     */
+    public WikiXMLStAXParser(final URL fileName) {
+        super(fileName);
+    }
+
+    @Override
+    public Iterator<WikiPage> iterator() {
+        try {
+            final XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            if (factory.isPropertySupported(TOTAL_ENTITY_SIZE_LIMIT)) {
+                factory.setProperty(TOTAL_ENTITY_SIZE_LIMIT, totalEntitySizeLimit);
+            }
+            return new PageIterator(factory.createXMLStreamReader(getInputSource().getCharacterStream()));
+        } catch (IOException | XMLStreamException e) {
+            throw new DataStoreException("Could not parse wikipedia file.", e);
+        }
+    }
+
+    /**
+     * Sets the total entity size limit for XML parsing security.
+     *
+     * @param totalEntitySizeLimit the maximum total size of all entities in bytes
+     */
+    public void setTotalEntitySizeLimit(final int totalEntitySizeLimit) {
+        this.totalEntitySizeLimit = totalEntitySizeLimit;
+    }
+
+    private class PageIterator implements Iterator<WikiPage> {
+
+        private final XMLStreamReader reader;
+
+        private WikiPage nextPage;
+
+        private boolean finished;
+
+        PageIterator(final XMLStreamReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (nextPage == null && !finished) {
+                try {
+                    nextPage = readPage();
+                } catch (final XMLStreamException e) {
+                    finish();
+                    throw new DataStoreException("Could not parse wikipedia file.", e);
+                }
+                if (nextPage == null) {
+                    finish();
+                }
+            }
+            return nextPage != null;
+        }
+
+        @Override
+        public WikiPage next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final WikiPage page = nextPage;
+            nextPage = null;
+            notifyPage(page);
+            return page;
+        }
+
+        private void finish() {
+            finished = true;
+            try {
+                reader.close();
+                close();
+            } catch (XMLStreamException | IOException e) {
+                logger.warn("Failed to close the dump.", e);
+            }
+        }
+
+        private WikiPage readPage() throws XMLStreamException {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && "page".equals(reader.getLocalName())) {
+                    final WikiPage page = readPageElement();
+                    if (page != null) {
+                        return page;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Reads a page element, or skips it and returns null if the page filter rejects it.
+         */
+        private WikiPage readPageElement() throws XMLStreamException {
+            final PageFilter pageFilter = getPageFilter();
+            final WikiPage page = new WikiPage();
+            page.setTitle(StringUtil.EMPTY);
+            String text = StringUtil.EMPTY;
+            Boolean accepted = pageFilter == null ? Boolean.TRUE : null;
+            boolean inRevision = false;
+            int depth = 1;
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    final String name = reader.getLocalName();
+                    if (depth == 1) {
+                        switch (name) {
+                        case "title":
+                            page.setTitle(reader.getElementText());
+                            continue;
+                        case "id": {
+                            final String value = reader.getElementText();
+                            if (StringUtil.isNotBlank(value)) {
+                                page.setId(value.trim());
+                            }
+                            continue;
+                        }
+                        case "ns":
+                            page.setNamespace(PageFilter.parseNamespace(reader.getElementText()));
+                            continue;
+                        case "redirect": {
+                            final String value = reader.getAttributeValue(null, "title");
+                            page.setRedirectTitle(value != null ? value : StringUtil.EMPTY);
+                            break;
+                        }
+                        case "revision":
+                            inRevision = true;
+                            break;
+                        default:
+                            break;
+                        }
+                    } else if (depth == 2 && inRevision) {
+                        switch (name) {
+                        case "text":
+                            if (accepted == null) {
+                                accepted = pageFilter.accept(page);
+                            }
+                            if (accepted) {
+                                text = reader.getElementText();
+                            } else {
+                                skipElement();
+                            }
+                            continue;
+                        case "id": {
+                            final String value = reader.getElementText();
+                            if (StringUtil.isNotBlank(value)) {
+                                page.setRevisionId(value.trim());
+                            }
+                            continue;
+                        }
+                        case "parentid": {
+                            final String value = reader.getElementText();
+                            if (StringUtil.isNotBlank(value)) {
+                                page.setParentId(value.trim());
+                            }
+                            continue;
+                        }
+                        case "sha1": {
+                            final String value = reader.getElementText();
+                            if (StringUtil.isNotBlank(value)) {
+                                page.setSha1(value.trim());
+                            }
+                            continue;
+                        }
+                        case "format": {
+                            final String value = reader.getElementText();
+                            if (StringUtil.isNotBlank(value)) {
+                                page.setFormat(value.trim());
+                            }
+                            continue;
+                        }
+                        case "model": {
+                            final String value = reader.getElementText();
+                            if (StringUtil.isNotBlank(value)) {
+                                page.setModel(value.trim());
+                            }
+                            continue;
+                        }
+                        case "timestamp": {
+                            final String value = reader.getElementText();
+                            if (StringUtil.isNotBlank(value)) {
+                                final long timestamp = SAXPageCallbackHandler.parseTimestampMillis(value);
+                                if (timestamp != WikiPage.NO_TIMESTAMP) {
+                                    page.setTimestampMillis(timestamp);
+                                }
+                            }
+                            continue;
+                        }
+                        default:
+                            break;
+                        }
+                    }
+                    depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                    if (depth == 0) {
+                        if (accepted == null) {
+                            accepted = pageFilter.accept(page);
+                        }
+                        if (!accepted) {
+                            return null;
+                        }
+                        page.setWikiText(text);
+                        return page;
+                    }
+                    if (depth == 1) {
+                        inRevision = false;
+                    }
+                }
+            }
+            throw new XMLStreamException("Unexpected end of the dump in a page.");
+        }
+
+        /**
+         * Skips the current element without building its text.
+         */
+        private void skipElement() throws XMLStreamException {
+            int depth = 1;
+            while (depth > 0) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+        }
+    }
+}
@@ -17,8 +17,34 @@ package org.codelibs.fess.ds.wikipedia;
 
 import org.junit.jupiter.api.TestInfo;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
+import org.codelibs.fess.ds.callback.IndexUpdateCallback;
+import org.codelibs.fess.ds.wikipedia.WikipediaDataStore.PageProcessor;
+import org.codelibs.fess.ds.wikipedia.support.CrawlCheckpoint;
+import org.codelibs.fess.ds.wikipedia.support.WikiPage;
+import org.codelibs.fess.entity.DataStoreParams;
+import org.codelibs.fess.exception.DataStoreCrawlingException;
+import org.codelibs.fess.exception.DataStoreException;
+import org.codelibs.fess.helper.CrawlerStatsHelper;
+import org.codelibs.fess.helper.CrawlerStatsHelper.StatsAction;
+import org.codelibs.fess.opensearch.config.exentity.DataConfig;
 import org.codelibs.fess.util.ComponentUtil;
 import org.codelibs.fess.ds.wikipedia.UnitDsTestCase;
 
@@ -31,6 +57,8 @@ public class WikipediaDataStoreTest extends UnitDsTestCase {
 
     private WikipediaDataStore dataStore;
 
+    private Path tempDir;
+
     @Override
     protected String prepareConfigFile() {
         return "test_app.xml";
@@ -45,11 +73,31 @@ public class WikipediaDataStoreTest extends UnitDsTestCase {
     public void setUp(TestInfo testInfo) throws Exception {
         super.setUp(testInfo);
         dataStore = new WikipediaDataStore();
+        ComponentUtil.register(new CrawlerStatsHelper() {
+            @Override
+            public void begin(final Object keyObj) {
+                // nothing
+            }
+
+            @Override
+            public void record(final Object keyObj, final StatsAction action) {
+                // nothing
+            }
+
+            @Override
+            public void done(final Object keyObj) {
+                // nothing
+            }
+        }, "crawlerStatsHelper");
+        tempDir = Files.createTempDirectory("wikipedia");
     }
 
     @Override
     public void tearDown(TestInfo testInfo) throws Exception {
         ComponentUtil.setFessConfig(null);
+        try (Stream<Path> paths = Files.walk(tempDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
         super.tearDown(testInfo);
     }
 
@@ -149,4 +197,326 @@ public class WikipediaDataStoreTest extends UnitDsTestCase {
     public void test_dataStoreNotNull() {
         assertNotNull(dataStore);
     }
+
+    public void test_bulkSize() throws Exception {
+        final RecordingCallback callback = new RecordingCallback();
+        final PageProcessor processor = createPageProcessor(callback, "bulk_size", "3");
+        assertTrue(processor.store(processor.transform(createPage(1))));
+        assertTrue(processor.store(processor.transform(createPage(2))));
+        assertEquals(List.of(), callback.getIds());
+        assertTrue(processor.store(processor.transform(createPage(3))));
+        assertEquals(List.of("1", "2", "3"), callback.getIds());
+        assertTrue(processor.store(processor.transform(createPage(4))));
+        assertEquals(3, callback.getIds().size());
+        assertTrue(processor.close());
+        assertEquals(List.of("1", "2", "3", "4"), callback.getIds());
+    }
+
+    public void test_bulkContentSize() throws Exception {
+        final RecordingCallback callback = new RecordingCallback();
+        // the content of each page has 10 characters
+        final PageProcessor processor = createPageProcessor(callback, "bulk_size", "100", "bulk_content_size", "25");
+        assertTrue(processor.store(processor.transform(createPage(1))));
+        assertTrue(processor.store(processor.transform(createPage(2))));
+        assertEquals(List.of(), callback.getIds());
+        assertTrue(processor.store(processor.transform(createPage(3))));
+        assertEquals(List.of("1", "2", "3"), callback.getIds());
+        assertTrue(processor.close());
+        assertEquals(3, callback.getIds().size());
+    }
+
+    public void test_bulkFlushInterval() throws Exception {
+        final RecordingCallback callback = new RecordingCallback();
+        final PageProcessor processor = createPageProcessor(callback, "bulk_size", "100", "bulk_flush_interval", "50");
+        try {
+            assertTrue(processor.store(processor.transform(createPage(1))));
+            assertTrue(processor.store(processor.transform(createPage(2))));
+            // the partial buffer is flushed by the timer while no page arrives
+            final long timeout = System.currentTimeMillis() + 10000;
+            while (callback.getIds().size() < 2 && System.currentTimeMillis() < timeout) {
+                Thread.sleep(10);
+            }
+            assertEquals(List.of("1", "2"), callback.getIds());
+        } finally {
+            assertTrue(processor.close());
+        }
+        assertEquals(2, callback.getIds().size());
+    }
+
+    public void test_bulk_concurrent() throws Exception {
+        final RecordingCallback callback = new RecordingCallback();
+        // the timer flushes concurrently with the workers
+        final PageProcessor processor = createPageProcessor(callback, "bulk_size", "7", "bulk_flush_interval", "1");
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                final int worker = i;
+                futures.add(executor.submit(() -> {
+                    boolean result = true;
+                    for (int id = worker * 500 + 1; id <= worker * 500 + 500; id++) {
+                        result &= processor.store(processor.transform(createPage(id)));
+                    }
+                    return result;
+                }));
+            }
+            for (final Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // the documents buffered when the crawl ends are not lost
+        assertTrue(processor.close());
+        assertEquals(2000, callback.getIds().size());
+        assertEquals(2000, new HashSet<>(callback.getIds()).size());
+    }
+
+    public void test_bulk_abort() throws Exception {
+        final RecordingCallback callback = new RecordingCallback();
+        callback.abortedId = "3";
+        final PageProcessor processor = createPageProcessor(callback, "bulk_size", "5");
+        for (int id = 1; id <= 4; id++) {
+            assertTrue(processor.store(processor.transform(createPage(id))));
+        }
+        // the rest of the batch after the aborted page is discarded
+        assertFalse(processor.store(processor.transform(createPage(5))));
+        assertEquals(List.of("1", "2"), callback.getIds());
+        assertFalse(processor.store(processor.transform(createPage(6))));
+        assertFalse(processor.close());
+        assertEquals(List.of("1", "2"), callback.getIds());
+    }
+
+    public void test_limit_withThreads() throws Exception {
+        final URL url = createDump("dump.xml", 1, 100, "a");
+        for (final String[] params : new String[][] { { "bulk_size", "1", "preserve_order", "false" },
+                { "bulk_size", "3", "preserve_order", "false" }, { "bulk_size", "3", "preserve_order", "true" } }) {
+            final RecordingCallback callback = new RecordingCallback();
+            storeData(callback, "url", url.toExternalForm(), "limit", "10", "thread_size", "4", params[0], params[1], params[2], params[3]);
+            assertEquals(10, callback.getIds().size());
+            assertEquals(10, new HashSet<>(callback.getIds()).size());
+        }
+    }
+
+    public void test_checkpoint_flushedBeforeSave() throws Exception {
+        final URL url = createDump("dump.xml", 1, 100, "a");
+        final Path checkpointFile = tempDir.resolve("crawl.checkpoint");
+        final RecordingCallback callback = new RecordingCallback();
+        callback.abortedId = "50";
+        // the checkpoint is saved for each page, and the buffered pages are stored before it
+        storeData(callback, "url", url.toExternalForm(), "thread_size", "0", "bulk_size", "1000", "checkpoint_file",
+                checkpointFile.toString(), "checkpoint_interval", "0", "delete_old_docs", "false");
+        assertEquals(49, callback.getIds().size());
+        assertEquals("49", loadCheckpoint(checkpointFile).getPageId());
+
+        final RecordingCallback resumed = new RecordingCallback();
+        storeData(resumed, "url", url.toExternalForm(), "thread_size", "0", "bulk_size", "1000", "checkpoint_file",
+                checkpointFile.toString(), "checkpoint_interval", "0", "delete_old_docs", "false");
+        assertEquals("50", resumed.getIds().get(0));
+        assertEquals(51, resumed.getIds().size());
+        assertFalse(Files.exists(checkpointFile));
+    }
+
+    public void test_stateFile_skipsUnchangedPages() throws Exception {
+        final String stateFile = tempDir.resolve("crawl.state").toString();
+        final URL url = createDump("dump.xml", 1, 10, "a");
+        final RecordingCallback callback = new RecordingCallback();
+        storeData(callback, "url", url.toExternalForm(), "state_file", stateFile, "delete_old_docs", "false");
+        assertEquals(10, callback.getIds().size());
+
+        final RecordingCallback second = new RecordingCallback();
+        storeData(second, "url", url.toExternalForm(), "state_file", stateFile, "delete_old_docs", "false");
+        assertEquals(List.of(), second.getIds());
+
+        // only the changed pages are stored
+        final URL changed = createDump("changed.xml", 4, 5, "b");
+        final RecordingCallback third = new RecordingCallback();
+        storeData(third, "url", url.toExternalForm() + "," + changed.toExternalForm(), "state_file", stateFile, "delete_old_docs",
+                "false");
+        assertEquals(List.of("4", "5"), third.getIds());
+    }
+
+    public void test_stateFile_retriesFailedPage() throws Exception {
+        final String stateFile = tempDir.resolve("crawl.state").toString();
+        final URL url = createDump("dump.xml", 1, 10, "a");
+        for (final String bulkSize : new String[] { "1", "4" }) {
+            Files.deleteIfExists(tempDir.resolve("crawl.state"));
+            final RecordingCallback callback = new RecordingCallback();
+            callback.abortedId = "3";
+            storeData(callback, "url", url.toExternalForm(), "state_file", stateFile, "delete_old_docs", "false", "bulk_size", bulkSize);
+            assertEquals(List.of("1", "2"), callback.getIds());
+
+            // the failed page is not recorded, so it is stored by the next crawl
+            final RecordingCallback retried = new RecordingCallback();
+            storeData(retried, "url", url.toExternalForm(), "state_file", stateFile, "delete_old_docs", "false", "bulk_size", bulkSize);
+            assertEquals(List.of("3", "4", "5", "6", "7", "8", "9", "10"), retried.getIds());
+        }
+    }
+
+    public void test_stateFile_requiresDeleteOldDocs() throws Exception {
+        final URL url = createDump("dump.xml", 1, 10, "a");
+        final RecordingCallback callback = new RecordingCallback();
+        try {
+            storeData(callback, "url", url.toExternalForm(), "state_file", tempDir.resolve("crawl.state").toString());
+            fail("DataStoreException is expected.");
+        } catch (final DataStoreException e) {
+            // expected
+        }
+        assertEquals(List.of(), callback.getIds());
+    }
+
+    public void test_checkpoint_resumeInSecondDump() throws Exception {
+        final String urls = createDump("dump1.xml", 1, 10, "a") + "," + createDump("dump2.xml", 11, 20, "a") + ","
+                + createDump("dump3.xml", 21, 30, "a");
+        final Path checkpointFile = tempDir.resolve("crawl.checkpoint");
+        new CrawlCheckpoint(checkpointFile, 0).update(tempDir.resolve("dump2.xml").toUri().toURL().toExternalForm(), "15");
+
+        final RecordingCallback callback = new RecordingCallback();
+        storeData(callback, "url", urls, "checkpoint_file", checkpointFile.toString(), "delete_old_docs", "false");
+        final List<String> expected = new ArrayList<>();
+        for (int id = 16; id <= 30; id++) {
+            expected.add(Integer.toString(id));
+        }
+        assertEquals(expected, callback.getIds());
+        // the checkpoint is deleted after all dumps are crawled
+        assertFalse(Files.exists(checkpointFile));
+    }
+
+    public void test_checkpoint_urlNotInDumps() throws Exception {
+        final URL url = createDump("dump.xml", 1, 10, "a");
+        final Path checkpointFile = tempDir.resolve("crawl.checkpoint");
+        new CrawlCheckpoint(checkpointFile, 0).update(tempDir.resolve("other.xml").toUri().toURL().toExternalForm(), "5");
+
+        final RecordingCallback callback = new RecordingCallback();
+        storeData(callback, "url", url.toExternalForm(), "checkpoint_file", checkpointFile.toString(), "delete_old_docs", "false");
+        assertEquals(10, callback.getIds().size());
+        assertEquals("1", callback.getIds().get(0));
+        assertFalse(Files.exists(checkpointFile));
+    }
+
+    public void test_checkpoint_keptAfterLimit() throws Exception {
+        final URL url = createDump("dump.xml", 1, 10, "a");
+        final Path checkpointFile = tempDir.resolve("crawl.checkpoint");
+
+        final RecordingCallback callback = new RecordingCallback();
+        storeData(callback, "url", url.toExternalForm(), "limit", "4", "checkpoint_file", checkpointFile.toString(), "delete_old_docs",
+                "false");
+        assertEquals(List.of("1", "2", "3", "4"), callback.getIds());
+        final CrawlCheckpoint checkpoint = loadCheckpoint(checkpointFile);
+        assertEquals(url.toExternalForm(), checkpoint.getUrl());
+        // the page which reaches the limit is not completed in the pipeline, so it is stored again
+        assertEquals("3", checkpoint.getPageId());
+
+        final RecordingCallback resumed = new RecordingCallback();
+        storeData(resumed, "url", url.toExternalForm(), "checkpoint_file", checkpointFile.toString(), "delete_old_docs", "false");
+        assertEquals(List.of("4", "5", "6", "7", "8", "9", "10"), resumed.getIds());
+        assertFalse(Files.exists(checkpointFile));
+    }
+
+    public void test_checkpoint_requiresDeleteOldDocs() throws Exception {
+        final URL url = createDump("dump.xml", 1, 10, "a");
+        final Path checkpointFile = tempDir.resolve("crawl.checkpoint");
+        final RecordingCallback callback = new RecordingCallback();
+        try {
+            storeData(callback, "url", url.toExternalForm(), "checkpoint_file", checkpointFile.toString());
+            fail("DataStoreException is expected.");
+        } catch (final DataStoreException e) {
+            // expected
+        }
+        assertEquals(List.of(), callback.getIds());
+    }
+
+    private void storeData(final IndexUpdateCallback callback, final String... params) {
+        final DataStoreParams paramMap = new DataStoreParams();
+        for (int i = 0; i < params.length; i += 2) {
+            paramMap.put(params[i], params[i + 1]);
+        }
+        dataStore.storeData(new DataConfig(), callback, paramMap, createScriptMap(), new HashMap<>());
+    }
+
+    private PageProcessor createPageProcessor(final IndexUpdateCallback callback, final String... params) {
+        final DataStoreParams paramMap = new DataStoreParams();
+        for (int i = 0; i < params.length; i += 2) {
+            paramMap.put(params[i], params[i + 1]);
+        }
+        return dataStore.new PageProcessor(new DataConfig(), callback, paramMap, createScriptMap(), new HashMap<>());
+    }
+
+    private Map<String, String> createScriptMap() {
+        final Map<String, String> scriptMap = new HashMap<>();
+        scriptMap.put("id", "id");
+        scriptMap.put("content", "content");
+        return scriptMap;
+    }
+
+    private WikiPage createPage(final int id) {
+        final WikiPage page = new WikiPage();
+        page.setId(Integer.toString(id));
+        page.setTitle("Page " + id);
+        page.setWikiText(String.format("Page %05d", id));
+        return page;
+    }
+
+    /**
+     * Creates a dump of the pages from firstId to lastId, whose sha1 starts with the given prefix.
+     */
+    private URL createDump(final String name, final int firstId, final int lastId, final String sha1Prefix) throws IOException {
+        final StringBuilder buf = new StringBuilder("<mediawiki>\n<siteinfo><sitename>Test</sitename></siteinfo>\n");
+        for (int id = firstId; id <= lastId; id++) {
+            buf.append("<page><title>Page ").append(id).append("</title><ns>0</ns><id>").append(id).append("</id>");
+            buf.append("<revision><id>").append(id).append("</id><timestamp>2025-01-01T00:00:00Z</timestamp>");
+            buf.append("<sha1>").append(sha1Prefix).append(id).append("</sha1>");
+            buf.append("<text>").append(String.format("Page %05d", id)).append("</text></revision></page>\n");
+        }
+        buf.append("</mediawiki>\n");
+        final Path file = tempDir.resolve(name);
+        Files.write(file, buf.toString().getBytes(StandardCharsets.UTF_8));
+        return file.toUri().toURL();
+    }
+
+    private CrawlCheckpoint loadCheckpoint(final Path file) throws IOException {
+        final CrawlCheckpoint checkpoint = new CrawlCheckpoint(file, 0);
+        assertTrue(checkpoint.load());
+        return checkpoint;
+    }
+
+    /**
+     * Records the ids of the stored documents, and aborts the crawl at the given page.
+     */
+    private static class RecordingCallback implements IndexUpdateCallback {
+
+        private final List<String> ids = Collections.synchronizedList(new ArrayList<>());
+
+        private volatile String abortedId;
+
+        @Override
+        public void store(final DataStoreParams paramMap, final Map<String, Object> dataMap) {
+            final String id = (String) dataMap.get("id");
+            if (id.equals(abortedId)) {
+                throw new DataStoreCrawlingException(id, "Aborted at " + id, null, true);
+            }
+            ids.add(id);
+        }
+
+        @Override
+        public long getDocumentSize() {
+            return ids.size();
+        }
+
+        @Override
+        public long getExecuteTime() {
+            return 0;
+        }
+
+        @Override
+        public void commit() {
+            // nothing
+        }
+
+        List<String> getIds() {
+            synchronized (ids) {
+                return new ArrayList<>(ids);
+            }
+        }
+    }
 }
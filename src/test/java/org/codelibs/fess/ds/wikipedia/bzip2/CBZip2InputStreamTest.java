@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.bzip2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.codelibs.fess.ds.wikipedia.UnitDsTestCase;
+
+/**
+ * Test class for CBZip2InputStream.
+ *
+ * @author CodeLibs
+ */
+public class CBZip2InputStreamTest extends UnitDsTestCase {
+
+    public void test_readAllBytes() throws Exception {
+        final byte[] data = createData(300000, 1);
+        try (InputStream in = open(compress(data, 1))) {
+            assertTrue(Arrays.equals(data, in.readAllBytes()));
+        }
+    }
+
+    public void test_readMixedSizes() throws Exception {
+        final byte[] data = createData(250000, 2);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Random random = new Random(2);
+        final byte[] buf = new byte[4096];
+        try (InputStream in = open(compress(data, 1))) {
+            while (true) {
+                if (random.nextInt(4) == 0) {
+                    final int b = in.read();
+                    if (b < 0) {
+                        break;
+                    }
+                    out.write(b);
+                } else {
+                    final int offs = random.nextInt(16);
+                    final int len = random.nextInt(buf.length - offs);
+                    final int n = in.read(buf, offs, len);
+                    if (n < 0) {
+                        break;
+                    }
+                    out.write(buf, offs, n);
+                }
+            }
+        }
+        assertTrue(Arrays.equals(data, out.toByteArray()));
+    }
+
+    public void test_readLongRuns() throws Exception {
+        final byte[] data = new byte[200000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ((i / 1000) % 3 == 0 ? 'a' : (i % 7 == 0 ? 'b' : 'c'));
+        }
+        final byte[] buf = new byte[7];
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = open(compress(data, 1))) {
+            for (int n; (n = in.read(buf, 0, buf.length)) >= 0;) {
+                out.write(buf, 0, n);
+            }
+        }
+        assertTrue(Arrays.equals(data, out.toByteArray()));
+    }
+
+    public void test_readZeroLength() throws Exception {
+        try (InputStream in = open(compress(createData(100, 3), 1))) {
+            assertEquals(0, in.read(new byte[10], 0, 0));
+        }
+    }
+
+    public void test_readCorrupted() throws Exception {
+        final byte[] compressed = compress(createData(50000, 4), 1);
+        compressed[compressed.length / 2] ^= 0x55;
+        try (InputStream in = open(compressed)) {
+            in.readAllBytes();
+            fail("IOException is expected.");
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+
+    private InputStream open(final byte[] compressed) throws IOException {
+        return new CBZip2InputStream(new ByteArrayInputStream(compressed, 2, compressed.length - 2));
+    }
+
+    private byte[] createData(final int size, final long seed) {
+        final Random random = new Random(seed);
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size;) {
+            final byte b = (byte) ('a' + random.nextInt(8));
+            final int run = random.nextInt(10) == 0 ? random.nextInt(300) : 1;
+            for (int j = 0; j < run && i < size; j++) {
+                data[i++] = b;
+            }
+        }
+        return data;
+    }
+
+    private byte[] compress(final byte[] data, final int blockSize) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write('B');
+        out.write('Z');
+        try (CBZip2OutputStream bzip2Out = new CBZip2OutputStream(out, blockSize)) {
+            bzip2Out.write(data);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.bzip2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codelibs.fess.ds.wikipedia.UnitDsTestCase;
+
+/**
+ * Test class for MultiStreamBZip2InputStream.
+ *
+ * @author CodeLibs
+ */
+public class MultiStreamBZip2InputStreamTest extends UnitDsTestCase {
+
+    public void test_readAllStreams() throws Exception {
+        final List<String> texts = createTexts(20);
+        final List<Long> offsetList = new ArrayList<>();
+        final byte[] compressed = compressStreams(texts, offsetList);
+        final long[] offsets = offsetList.stream().mapToLong(Long::longValue).toArray();
+
+        for (final int threadSize : new int[] { 1, 3 }) {
+            try (InputStream in = new MultiStreamBZip2InputStream(new ByteArrayInputStream(compressed), offsets, threadSize)) {
+                assertEquals(String.join("", texts), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    public void test_readFromStartOffset() throws Exception {
+        final List<String> texts = createTexts(5);
+        final List<Long> offsetList = new ArrayList<>();
+        final byte[] compressed = compressStreams(texts, offsetList);
+        final long[] offsets = offsetList.stream().mapToLong(Long::longValue).toArray();
+
+        final int start = (int) offsets[2];
+        final ByteArrayInputStream source = new ByteArrayInputStream(compressed, start, compressed.length - start);
+        try (InputStream in = new MultiStreamBZip2InputStream(source, start, offsets, 2)) {
+            assertEquals(String.join("", texts.subList(2, texts.size())), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    public void test_readWithoutOffsets() throws Exception {
+        final List<String> texts = createTexts(3);
+        final byte[] compressed = compressStreams(texts, new ArrayList<>());
+
+        try (InputStream in = new MultiStreamBZip2InputStream(new ByteArrayInputStream(compressed), new long[0], 2)) {
+            assertEquals(String.join("", texts), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    public void test_readConcatenatedStreams() throws Exception {
+        final List<String> texts = createTexts(4);
+        final byte[] compressed = compressStreams(texts, new ArrayList<>());
+
+        final ByteArrayInputStream source = new ByteArrayInputStream(compressed, 2, compressed.length - 2);
+        try (InputStream in = new CBZip2InputStream(source, true)) {
+            assertEquals(String.join("", texts), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    public void test_readFirstStreamOnly() throws Exception {
+        final List<String> texts = createTexts(4);
+        final byte[] compressed = compressStreams(texts, new ArrayList<>());
+
+        final ByteArrayInputStream source = new ByteArrayInputStream(compressed, 2, compressed.length - 2);
+        try (InputStream in = new CBZip2InputStream(source)) {
+            assertEquals(texts.get(0), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    public void test_readInvalidStream() throws Exception {
+        final byte[] data = "not bzip2 data".getBytes(StandardCharsets.UTF_8);
+        try (InputStream in = new MultiStreamBZip2InputStream(new ByteArrayInputStream(data), new long[] { 4 }, 1)) {
+            in.readAllBytes();
+            fail("IOException is expected.");
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+
+    private List<String> createTexts(final int size) {
+        final List<String> texts = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            final StringBuilder buf = new StringBuilder();
+            for (int j = 0; j < 100 + i * 37; j++) {
+                buf.append("<page><title>Page ").append(i).append('-').append(j).append("</title></page>\n");
+            }
+            texts.add(buf.toString());
+        }
+        return texts;
+    }
+
+    private byte[] compressStreams(final List<String> texts, final List<Long> offsets) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (final String text : texts) {
+            offsets.add((long) out.size());
+            out.write('B');
+            out.write('Z');
+            try (CBZip2OutputStream bzip2Out = new CBZip2OutputStream(out, 1)) {
+                bzip2Out.write(text.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.bzip2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.codelibs.fess.ds.wikipedia.UnitDsTestCase;
+
+/**
+ * Test class for ParallelBZip2InputStream.
+ *
+ * @author CodeLibs
+ */
+public class ParallelBZip2InputStreamTest extends UnitDsTestCase {
+
+    public void test_readMultipleBlocks() throws Exception {
+        final byte[] data = createData(350000, 1);
+        final byte[] compressed = compress(data, 1);
+
+        for (final int threadSize : new int[] { 1, 4 }) {
+            try (InputStream in = new ParallelBZip2InputStream(new ByteArrayInputStream(compressed, 2, compressed.length - 2), threadSize)) {
+                assertTrue(Arrays.equals(data, in.readAllBytes()));
+            }
+        }
+    }
+
+    public void test_readSingleBlock() throws Exception {
+        final byte[] data = createData(1000, 2);
+        final byte[] compressed = compress(data, 9);
+
+        try (InputStream in = new ParallelBZip2InputStream(new ByteArrayInputStream(compressed, 2, compressed.length - 2), 2)) {
+            assertTrue(Arrays.equals(data, in.readAllBytes()));
+        }
+    }
+
+    public void test_readByteByByte() throws Exception {
+        final byte[] data = createData(5000, 3);
+        final byte[] compressed = compress(data, 1);
+
+        try (InputStream in = new ParallelBZip2InputStream(new ByteArrayInputStream(compressed, 2, compressed.length - 2), 2)) {
+            for (final byte b : data) {
+                assertEquals(b & 0xff, in.read());
+            }
+            assertEquals(-1, in.read());
+        }
+    }
+
+    public void test_readConcatenatedStreams() throws Exception {
+        final byte[] data1 = createData(150000, 4);
+        final byte[] data2 = createData(20000, 5);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(compress(data1, 1));
+        out.write(compress(data2, 2));
+        final byte[] compressed = out.toByteArray();
+
+        try (InputStream in = new ParallelBZip2InputStream(new ByteArrayInputStream(compressed, 2, compressed.length - 2), 3)) {
+            final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            expected.write(data1);
+            expected.write(data2);
+            assertTrue(Arrays.equals(expected.toByteArray(), in.readAllBytes()));
+        }
+    }
+
+    public void test_readTruncatedStream() throws Exception {
+        final byte[] data = createData(250000, 6);
+        final byte[] compressed = compress(data, 1);
+
+        try (InputStream in = new ParallelBZip2InputStream(new ByteArrayInputStream(compressed, 2, compressed.length / 2), 2)) {
+            in.readAllBytes();
+            fail("IOException is expected.");
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+
+    public void test_readFalseBlockMagic() throws Exception {
+        // the bitmaps of the used bytes in each block header are 0x3141, 0x5926 and 0x5359,
+        // so the block magic 0x314159265359 also occurs after the real one
+        final byte[] chars = "BCGIOQSTWZ]^acfgiklo".getBytes();
+        final Random random = new Random(7);
+        final byte[] data = new byte[250000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = chars[i % 1000 < chars.length ? i % 1000 : random.nextInt(chars.length)];
+        }
+        final byte[] compressed = compress(data, 1);
+        assertEquals(6, countBlockMagic(compressed));
+
+        for (final int threadSize : new int[] { 1, 4 }) {
+            try (InputStream in = new ParallelBZip2InputStream(new ByteArrayInputStream(compressed, 2, compressed.length - 2), threadSize)) {
+                assertTrue(Arrays.equals(data, in.readAllBytes()));
+            }
+        }
+    }
+
+    public void test_readFalseEndOfStreamMagic() throws Exception {
+        // the bitmaps of the used bytes in each block header are 0x1772, 0x4538, 0x5090, 0x3141, 0x5926 and 0x5359,
+        // so the end-of-stream magic 0x177245385090 occurs followed by the block magic in its trailer bytes
+        final byte[] chars = createChars(0x20, 0x1772, 0x4538, 0x5090, 0x3141, 0x5926, 0x5359);
+        final Random random = new Random(8);
+        final byte[] data = new byte[250000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = chars[i % 1000 < chars.length ? i % 1000 : random.nextInt(chars.length)];
+        }
+        final byte[] compressed = compress(data, 1);
+        assertEquals(4, countMagic(compressed, 0x177245385090L));
+
+        for (final int threadSize : new int[] { 1, 4 }) {
+            try (InputStream in = new ParallelBZip2InputStream(new ByteArrayInputStream(compressed, 2, compressed.length - 2), threadSize)) {
+                assertTrue(Arrays.equals(data, in.readAllBytes()));
+            }
+        }
+    }
+
+    public void test_readTrailingBytes() throws Exception {
+        final byte[] data = createData(150000, 9);
+        for (final String trailer : new String[] { "\n", "\0\0\0\0\0\0\0\0", "not a bzip2 stream" }) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(compress(data, 1));
+            out.write(trailer.getBytes());
+            final byte[] compressed = out.toByteArray();
+
+            try (InputStream in = new ParallelBZip2InputStream(new ByteArrayInputStream(compressed, 2, compressed.length - 2), 2)) {
+                assertTrue(Arrays.equals(data, in.readAllBytes()));
+            }
+        }
+    }
+
+    public void test_invalidHeader() throws Exception {
+        try {
+            new ParallelBZip2InputStream(new ByteArrayInputStream("x9".getBytes()), 1);
+            fail("IOException is expected.");
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+
+    private byte[] createData(final int size, final long seed) {
+        final Random random = new Random(seed);
+        final String[] words = { "wiki", "page", "title", "revision", "text", "category", "link", "[[", "]]", "{{", "}}", "\n" };
+        final byte[] data = new byte[size];
+        int pos = 0;
+        while (pos < size) {
+            final byte[] word = (words[random.nextInt(words.length)] + ' ').getBytes();
+            final int len = Math.min(word.length, size - pos);
+            System.arraycopy(word, 0, data, pos, len);
+            pos += len;
+        }
+        return data;
+    }
+
+    private byte[] createChars(final int firstByte, final int... bitmaps) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < bitmaps.length; i++) {
+            for (int j = 0; j < 16; j++) {
+                if ((bitmaps[i] & (0x8000 >>> j)) != 0) {
+                    out.write(firstByte + i * 16 + j);
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private int countBlockMagic(final byte[] bytes) {
+        return countMagic(bytes, 0x314159265359L);
+    }
+
+    private int countMagic(final byte[] bytes, final long magic) {
+        int count = 0;
+        long window = 0;
+        for (int i = 0; i < bytes.length * 8; i++) {
+            window = ((window << 1) | ((bytes[i >>> 3] >>> (7 - (i & 7))) & 1)) & 0xffffffffffffL;
+            if (i >= 47 && window == magic) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private byte[] compress(final byte[] data, final int blockSize) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write('B');
+        out.write('Z');
+        try (CBZip2OutputStream bzip2Out = new CBZip2OutputStream(out, blockSize)) {
+            bzip2Out.write(data);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.decompressor;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import org.codelibs.fess.ds.wikipedia.UnitDsTestCase;
+import org.codelibs.fess.ds.wikipedia.bzip2.CBZip2OutputStream;
+
+/**
+ * Test class for DumpDecompressors.
+ *
+ * @author CodeLibs
+ */
+public class DumpDecompressorsTest extends UnitDsTestCase {
+
+    private static final String XML = "<mediawiki><page><title>Test</title></page></mediawiki>";
+
+    public void test_open_bzip2() throws Exception {
+        for (final int threadSize : new int[] { 1, 2 }) {
+            try (InputStream in = new DumpDecompressors().open(new ByteArrayInputStream(bzip2(XML)), DumpDecompressors.AUTO, threadSize)) {
+                assertEquals(XML, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    public void test_open_gzip() throws Exception {
+        try (InputStream in = new DumpDecompressors().open(new ByteArrayInputStream(gzip(XML)), DumpDecompressors.AUTO, 1)) {
+            assertEquals(XML, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    public void test_open_concatenatedGzip() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(gzip("<mediawiki>"));
+        out.write(gzip("</mediawiki>"));
+        try (InputStream in = new DumpDecompressors().open(new ByteArrayInputStream(out.toByteArray()), DumpDecompressors.AUTO, 1)) {
+            assertEquals("<mediawiki></mediawiki>", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    public void test_open_plain() throws Exception {
+        final byte[] data = XML.getBytes(StandardCharsets.UTF_8);
+        try (InputStream in = new DumpDecompressors().open(new ByteArrayInputStream(data), DumpDecompressors.AUTO, 1)) {
+            assertEquals(XML, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    public void test_open_empty() throws Exception {
+        try (InputStream in = new DumpDecompressors().open(new ByteArrayInputStream(new byte[0]), DumpDecompressors.AUTO, 1)) {
+            assertEquals(0, in.readAllBytes().length);
+        }
+    }
+
+    public void test_open_byName() throws Exception {
+        try (InputStream in = new DumpDecompressors().open(new ByteArrayInputStream(gzip(XML)), "gzip", 1)) {
+            assertEquals(XML, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        final byte[] data = gzip(XML);
+        try (InputStream in = new DumpDecompressors().open(new ByteArrayInputStream(data), DumpDecompressors.NONE, 1)) {
+            assertEquals(data.length, in.readAllBytes().length);
+        }
+    }
+
+    public void test_open_unknownName() throws Exception {
+        try {
+            new DumpDecompressors().open(new ByteArrayInputStream(gzip(XML)), "lz4", 1);
+            fail("IOException is expected.");
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+
+    public void test_detect() throws Exception {
+        final DumpDecompressors decompressors = new DumpDecompressors();
+        assertEquals("bzip2", detect(decompressors, bzip2(XML)));
+        assertEquals("gzip", detect(decompressors, gzip(XML)));
+        assertEquals("zstd", detect(decompressors, new byte[] { 0x28, (byte) 0xb5, 0x2f, (byte) 0xfd, 0, 0 }));
+        assertEquals("xz", detect(decompressors, new byte[] { (byte) 0xfd, '7', 'z', 'X', 'Z', 0, 0, 0 }));
+        assertNull(detect(decompressors, XML.getBytes(StandardCharsets.UTF_8)));
+        assertNull(detect(decompressors, "BZ".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public void test_detect_keepsPosition() throws Exception {
+        final byte[] data = gzip(XML);
+        final InputStream in = new BufferedInputStream(new ByteArrayInputStream(data));
+        new DumpDecompressors().detect(in);
+        assertEquals(data.length, in.readAllBytes().length);
+    }
+
+    private String detect(final DumpDecompressors decompressors, final byte[] data) throws IOException {
+        final DumpDecompressor decompressor = decompressors.detect(new BufferedInputStream(new ByteArrayInputStream(data)));
+        return decompressor == null ? null : decompressor.getName();
+    }
+
+    private byte[] bzip2(final String text) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write('B');
+        out.write('Z');
+        try (CBZip2OutputStream bzip2Out = new CBZip2OutputStream(out)) {
+            bzip2Out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] gzip(final String text) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+}
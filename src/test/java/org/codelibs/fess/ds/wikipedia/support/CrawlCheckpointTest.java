@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.codelibs.fess.ds.wikipedia.UnitDsTestCase;
+
+/**
+ * Test class for CrawlCheckpoint.
+ *
+ * @author CodeLibs
+ */
+public class CrawlCheckpointTest extends UnitDsTestCase {
+
+    public void test_update() throws Exception {
+        final Path file = createDir().resolve("checkpoint").resolve("enwiki.properties");
+        final CrawlCheckpoint checkpoint = new CrawlCheckpoint(file, 0);
+        assertFalse(checkpoint.load());
+        assertTrue(checkpoint.isDue());
+
+        checkpoint.update("file:/a.xml", null);
+        assertFalse(Files.exists(file));
+
+        checkpoint.update("file:/a.xml", "10");
+        assertTrue(Files.exists(file));
+        assertFalse(Files.exists(file.resolveSibling("enwiki.properties.tmp")));
+
+        final CrawlCheckpoint loaded = new CrawlCheckpoint(file, 0);
+        assertTrue(loaded.load());
+        assertEquals("file:/a.xml", loaded.getUrl());
+        assertEquals("10", loaded.getPageId());
+
+        checkpoint.delete();
+        assertFalse(Files.exists(file));
+        assertNull(checkpoint.getUrl());
+        assertNull(checkpoint.getPageId());
+    }
+
+    public void test_update_withInterval() throws Exception {
+        final Path file = createDir().resolve("enwiki.properties");
+        final CrawlCheckpoint checkpoint = new CrawlCheckpoint(file, 60000);
+        assertFalse(checkpoint.isDue());
+        checkpoint.update("file:/a.xml", "10");
+        checkpoint.update("file:/b.xml", "20");
+        assertFalse(Files.exists(file));
+        assertEquals("file:/b.xml", checkpoint.getUrl());
+        assertEquals("20", checkpoint.getPageId());
+
+        checkpoint.save();
+        final CrawlCheckpoint loaded = new CrawlCheckpoint(file, 0);
+        assertTrue(loaded.load());
+        assertEquals("file:/b.xml", loaded.getUrl());
+        assertEquals("20", loaded.getPageId());
+
+        // nothing is written without updates
+        Files.delete(file);
+        checkpoint.save();
+        assertFalse(Files.exists(file));
+    }
+
+    public void test_load_invalid() throws Exception {
+        final Path file = createDir().resolve("enwiki.properties");
+        Files.write(file, "url=file:/a.xml\n".getBytes(StandardCharsets.UTF_8));
+        try {
+            new CrawlCheckpoint(file, 0).load();
+            fail("IOException is expected.");
+        } catch (final IOException e) {
+            // expected
+        }
+        Files.delete(file);
+    }
+
+    private Path createDir() throws Exception {
+        final File dir = Files.createTempDirectory("wikipedia").toFile();
+        dir.deleteOnExit();
+        return dir.toPath();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.codelibs.fess.ds.wikipedia.UnitDsTestCase;
+
+/**
+ * Test class for LayeredMap.
+ *
+ * @author CodeLibs
+ */
+public class LayeredMapTest extends UnitDsTestCase {
+
+    public void test_overlay() {
+        final Map<String, Object> base = new HashMap<>();
+        base.put("url", "file:/a.xml");
+        base.put("limit", "10");
+        base.put("empty", null);
+
+        final Map<String, Object> map = new LayeredMap<>(base, 4);
+        assertEquals(3, map.size());
+        assertEquals("file:/a.xml", map.get("url"));
+        assertTrue(map.containsKey("empty"));
+        assertNull(map.get("empty"));
+        assertFalse(map.containsKey("title"));
+
+        assertNull(map.put("title", "Tokyo"));
+        assertEquals("10", map.put("limit", "20"));
+        assertEquals("20", map.put("limit", null));
+        assertEquals(4, map.size());
+        assertEquals("Tokyo", map.get("title"));
+        assertNull(map.get("limit"));
+        assertTrue(map.containsKey("limit"));
+
+        final Map<String, Object> expected = new HashMap<>(base);
+        expected.put("title", "Tokyo");
+        expected.put("limit", null);
+        assertEquals(expected, new HashMap<>(map));
+        assertEquals(expected, map);
+
+        // the base map is not modified
+        assertEquals(3, base.size());
+        assertEquals("10", base.get("limit"));
+    }
+
+    public void test_remove() {
+        final Map<String, Object> base = new HashMap<>();
+        base.put("url", "file:/a.xml");
+        final Map<String, Object> map = new LayeredMap<>(base, 4);
+        map.put("title", "Tokyo");
+        assertEquals("Tokyo", map.remove("title"));
+        assertNull(map.remove("title"));
+        assertEquals(1, map.size());
+
+        try {
+            map.remove("url");
+            fail("UnsupportedOperationException is expected.");
+        } catch (final UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            map.entrySet().iterator().next().setValue("file:/b.xml");
+            fail("UnsupportedOperationException is expected.");
+        } catch (final UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals("file:/a.xml", base.get("url"));
+    }
+}
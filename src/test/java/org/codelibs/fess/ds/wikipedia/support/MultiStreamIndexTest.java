@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.codelibs.fess.ds.wikipedia.UnitDsTestCase;
+
+/**
+ * Test class for MultiStreamIndex.
+ *
+ * @author CodeLibs
+ */
+public class MultiStreamIndexTest extends UnitDsTestCase {
+
+    public void test_load() throws Exception {
+        final String index = "597:10:AccessibleComputing\n" + "597:12:Anarchism\n" + "597:13:AfghanistanHistory\n"
+                + "681049:290:A\n" + "681049:303:Alabama\n" + "1320532:600:Andorra\n";
+
+        final MultiStreamIndex multiStreamIndex = MultiStreamIndex.load(new StringReader(index));
+
+        assertEquals(3, multiStreamIndex.size());
+        assertEquals(597L, multiStreamIndex.getOffsets()[0]);
+        assertEquals(681049L, multiStreamIndex.getOffsets()[1]);
+        assertEquals(1320532L, multiStreamIndex.getOffsets()[2]);
+        assertEquals(10L, multiStreamIndex.getFirstPageIds()[0]);
+        assertEquals(290L, multiStreamIndex.getFirstPageIds()[1]);
+        assertEquals(600L, multiStreamIndex.getFirstPageIds()[2]);
+    }
+
+    public void test_findStream() throws Exception {
+        final String index = "597:10:AccessibleComputing\n" + "597:12:Anarchism\n" + "681049:290:A\n" + "1320532:600:Andorra\n";
+
+        final MultiStreamIndex multiStreamIndex = MultiStreamIndex.load(new StringReader(index));
+
+        assertEquals(-1, multiStreamIndex.findStream(9));
+        assertEquals(0, multiStreamIndex.findStream(10));
+        assertEquals(0, multiStreamIndex.findStream(289));
+        assertEquals(1, multiStreamIndex.findStream(290));
+        assertEquals(1, multiStreamIndex.findStream(599));
+        assertEquals(2, multiStreamIndex.findStream(600));
+        assertEquals(2, multiStreamIndex.findStream(Long.MAX_VALUE));
+    }
+
+    public void test_findStreamAt() throws Exception {
+        final String index = "597:10:AccessibleComputing\n" + "681049:290:A\n" + "1320532:600:Andorra\n";
+
+        final MultiStreamIndex multiStreamIndex = MultiStreamIndex.load(new StringReader(index));
+
+        assertEquals(0, multiStreamIndex.findStreamAt(0));
+        assertEquals(0, multiStreamIndex.findStreamAt(597));
+        assertEquals(1, multiStreamIndex.findStreamAt(598));
+        assertEquals(1, multiStreamIndex.findStreamAt(681049));
+        assertEquals(2, multiStreamIndex.findStreamAt(1320532));
+        assertEquals(3, multiStreamIndex.findStreamAt(1320533));
+    }
+
+    public void test_load_titleWithColon() throws Exception {
+        final String index = "597:10:Wikipedia:About\n";
+
+        final MultiStreamIndex multiStreamIndex = MultiStreamIndex.load(new StringReader(index));
+
+        assertEquals(1, multiStreamIndex.size());
+        assertEquals(10L, multiStreamIndex.getFirstPageIds()[0]);
+    }
+
+    public void test_load_empty() throws Exception {
+        final MultiStreamIndex multiStreamIndex = MultiStreamIndex.load(new StringReader(""));
+        assertEquals(0, multiStreamIndex.size());
+    }
+
+    public void test_load_unsorted() throws Exception {
+        try {
+            MultiStreamIndex.load(new StringReader("1000:1:A\n500:2:B\n"));
+            fail("IOException is expected.");
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+
+    public void test_load_invalidOffset() throws Exception {
+        try {
+            MultiStreamIndex.load(new StringReader("abc:1:A\n"));
+            fail("IOException is expected.");
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.util.Set;
+
+import org.codelibs.fess.ds.wikipedia.UnitDsTestCase;
+
+/**
+ * Test class for PageFilter.
+ *
+ * @author CodeLibs
+ */
+public class PageFilterTest extends UnitDsTestCase {
+
+    static final String FILTER_XML = "<mediawiki>" //
+            + "<page><title>Article</title><ns>0</ns><id>1</id><revision><id>10</id><model>wikitext</model><text>Article text</text></revision></page>" //
+            + "<page><title>Redirect</title><ns>0</ns><id>2</id><redirect title=\"Article\" />"
+            + "<revision><id>20</id><model>wikitext</model><text>#REDIRECT [[Article]]</text></revision></page>" //
+            + "<page><title>Talk:Article</title><ns>1</ns><id>3</id><revision><id>30</id><text>Talk text</text></revision></page>" //
+            + "<page><title>List of articles</title><ns>0</ns><id>4</id><revision><id>40</id><text>List text</text></revision></page>" //
+            + "<page><title>Style.css</title><ns>0</ns><id>5</id><revision><id>50</id><model>css</model><text>a {}</text></revision></page>" //
+            + "<page><title>Other</title><ns>0</ns><id>6</id><revision><id>60</id><model>wikitext</model><text>Other text</text></revision></page>" //
+            + "</mediawiki>";
+
+    static PageFilter createFilter() {
+        final PageFilter filter = new PageFilter();
+        filter.setNamespaces(Set.of(0));
+        filter.setSkipRedirects(true);
+        filter.setExcludedTitlePrefixes(new String[] { "List of " });
+        filter.setModels(Set.of("wikitext"));
+        return filter;
+    }
+
+    public void test_acceptAll() {
+        final PageFilter filter = new PageFilter();
+        assertTrue(filter.accept("Talk:Page", 1, true, "css"));
+        assertTrue(filter.accept(null, PageFilter.UNKNOWN_NAMESPACE, false, null));
+        assertEquals(0, filter.getSkippedCount());
+    }
+
+    public void test_accept() {
+        final PageFilter filter = new PageFilter();
+        filter.setNamespaces(Set.of(0, 14));
+        filter.setSkipRedirects(true);
+        filter.setExcludedTitlePrefixes(new String[] { "List of ", "Index of " });
+        filter.setModels(Set.of("wikitext"));
+
+        assertTrue(filter.accept("Tokyo", 0, false, "wikitext"));
+        assertTrue(filter.accept("Category:Cities", 14, false, "wikitext"));
+        assertTrue(filter.accept("Old page", PageFilter.UNKNOWN_NAMESPACE, false, null));
+        assertTrue(filter.accept("Lists", 0, false, "wikitext"));
+
+        assertFalse(filter.accept("Talk:Tokyo", 1, false, "wikitext"));
+        assertFalse(filter.accept("Tokio", 0, true, "wikitext"));
+        assertFalse(filter.accept("List of cities", 0, false, "wikitext"));
+        assertFalse(filter.accept("Style.css", 0, false, "css"));
+        assertEquals(4, filter.getSkippedCount());
+    }
+
+    public void test_accept_withMinPageId() {
+        final PageFilter filter = new PageFilter();
+        filter.setMinPageId(10);
+        filter.setNamespaces(Set.of(0));
+
+        assertFalse(filter.accept(createPage("9", 0)));
+        assertTrue(filter.accept(createPage("10", 0)));
+        assertTrue(filter.accept(createPage("11", 0)));
+        assertFalse(filter.accept(createPage("11", 1)));
+        // pages without a numeric id are not filtered by the id
+        assertTrue(filter.accept(createPage(null, 0)));
+        assertTrue(filter.accept(createPage("abc", 0)));
+        assertEquals(2, filter.getSkippedCount());
+
+        filter.setMinPageId(-1);
+        assertTrue(filter.accept(createPage("9", 0)));
+    }
+
+    public void test_accept_withMaxPageId() {
+        final PageFilter filter = new PageFilter();
+        filter.setMinPageId(10);
+        filter.setMaxPageId(20);
+
+        assertFalse(filter.accept(createPage("9", 0)));
+        assertTrue(filter.accept(createPage("10", 0)));
+        assertTrue(filter.accept(createPage("20", 0)));
+        assertFalse(filter.accept(createPage("21", 0)));
+        assertTrue(filter.accept(createPage("abc", 0)));
+        assertEquals(2, filter.getSkippedCount());
+    }
+
+    public void test_parseNamespace() {
+        assertEquals(0, PageFilter.parseNamespace("0"));
+        assertEquals(-2, PageFilter.parseNamespace(" -2\n"));
+        assertEquals(PageFilter.UNKNOWN_NAMESPACE, PageFilter.parseNamespace(null));
+        assertEquals(PageFilter.UNKNOWN_NAMESPACE, PageFilter.parseNamespace("main"));
+    }
+
+    private WikiPage createPage(final String id, final int namespace) {
+        final WikiPage page = new WikiPage();
+        page.setId(id);
+        page.setTitle("Page " + id);
+        page.setNamespace(namespace);
+        return page;
+    }
+}
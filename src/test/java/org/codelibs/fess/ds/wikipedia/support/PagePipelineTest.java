@@ -0,0 +1,208 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codelibs.fess.ds.wikipedia.UnitDsTestCase;
+import org.codelibs.fess.exception.DataStoreException;
+
+/**
+ * Test class for PagePipeline.
+ *
+ * @author CodeLibs
+ */
+public class PagePipelineTest extends UnitDsTestCase {
+
+    public void test_singleWorker() throws Exception {
+        final URL url = createFile(createXml(200));
+        final List<String> ids = new ArrayList<>();
+        try (PagePipeline<String> pipeline = new PagePipeline<>(new WikiXMLStAXParser(url), WikiPage::getId, 1, 4)) {
+            while (pipeline.hasNext()) {
+                ids.add(pipeline.next());
+            }
+        }
+        assertEquals(200, ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(Integer.toString(i + 1), ids.get(i));
+        }
+    }
+
+    public void test_multipleWorkers() throws Exception {
+        final URL url = createFile(createXml(500));
+        for (final WikiXMLParser parser : new WikiXMLParser[] { new WikiXMLStAXParser(url), new WikiXMLSAXParser(url) }) {
+            final List<Integer> ids = new ArrayList<>();
+            try (PagePipeline<Integer> pipeline = new PagePipeline<>(parser, page -> Integer.valueOf(page.getId()), 4, 8)) {
+                while (pipeline.hasNext()) {
+                    ids.add(pipeline.next());
+                }
+            }
+            Collections.sort(ids);
+            assertEquals(500, ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                assertEquals(i + 1, ids.get(i).intValue());
+            }
+        }
+    }
+
+    public void test_ordered() throws Exception {
+        final URL url = createFile(createXml(300));
+        for (final WikiXMLParser parser : new WikiXMLParser[] { new WikiXMLStAXParser(url), new WikiXMLSAXParser(url) }) {
+            final List<Integer> ids = new ArrayList<>();
+            try (PagePipeline<Integer> pipeline = new PagePipeline<>(parser, page -> {
+                final int id = Integer.parseInt(page.getId());
+                if (id % 7 == 0) {
+                    try {
+                        Thread.sleep(2);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return id % 10 == 0 ? null : id;
+            }, 4, 3, true)) {
+                while (pipeline.hasNext()) {
+                    ids.add(pipeline.next());
+                }
+            }
+            assertEquals(270, ids.size());
+            for (int i = 1; i < ids.size(); i++) {
+                assertTrue(ids.get(i - 1) < ids.get(i));
+            }
+        }
+    }
+
+    public void test_closeEarly() throws Exception {
+        final URL url = createFile(createXml(1000));
+        for (final WikiXMLParser parser : new WikiXMLParser[] { new WikiXMLStAXParser(url), new WikiXMLSAXParser(url) }) {
+            final AtomicInteger transformed = new AtomicInteger();
+            final AtomicInteger discarded = new AtomicInteger();
+            int consumed = 0;
+            try (PagePipeline<String> pipeline = new PagePipeline<>(parser, page -> {
+                transformed.incrementAndGet();
+                return page.getId();
+            }, 2, 4)) {
+                pipeline.setDiscardHandler(id -> discarded.incrementAndGet());
+                while (pipeline.hasNext() && consumed < 10) {
+                    pipeline.next();
+                    consumed++;
+                }
+            }
+            assertEquals(10, consumed);
+            assertTrue(transformed.get() < 1000);
+            assertTrue(transformed.get() >= consumed + discarded.get());
+        }
+    }
+
+    public void test_parseError() throws Exception {
+        final String xml = createXml(50);
+        final URL url = createFile(xml.substring(0, xml.lastIndexOf("<page>") + 20));
+        final List<String> ids = new ArrayList<>();
+        try (PagePipeline<String> pipeline = new PagePipeline<>(new WikiXMLStAXParser(url), WikiPage::getId, 2, 4)) {
+            while (pipeline.hasNext()) {
+                ids.add(pipeline.next());
+            }
+            fail("DataStoreException is expected.");
+        } catch (final DataStoreException e) {
+            // expected
+        }
+        assertEquals(49, ids.size());
+    }
+
+    public void test_transformError() throws Exception {
+        final URL url = createFile(createXml(50));
+        try (PagePipeline<String> pipeline = new PagePipeline<>(new WikiXMLStAXParser(url), page -> {
+            if ("10".equals(page.getId())) {
+                throw new IllegalStateException("test");
+            }
+            return page.getId();
+        }, 2, 4)) {
+            while (pipeline.hasNext()) {
+                pipeline.next();
+            }
+            fail("DataStoreException is expected.");
+        } catch (final DataStoreException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    public void test_completedPageId() throws Exception {
+        final URL url = createFile(createXml(300));
+        for (final boolean preserveOrder : new boolean[] { false, true }) {
+            final List<Integer> ids = new ArrayList<>();
+            try (PagePipeline<Integer> pipeline = new PagePipeline<>(new WikiXMLStAXParser(url), page -> {
+                final int id = Integer.parseInt(page.getId());
+                return id % 10 == 0 ? null : id;
+            }, 4, 3, preserveOrder)) {
+                assertNull(pipeline.getCompletedPageId());
+                while (pipeline.hasNext()) {
+                    final String completed = pipeline.getCompletedPageId();
+                    if (completed != null) {
+                        // all pages up to the completed one are returned, except for the filtered ones
+                        final int completedId = Integer.parseInt(completed);
+                        for (int i = 1; i <= completedId; i++) {
+                            assertTrue(i % 10 == 0 || ids.contains(i));
+                        }
+                    }
+                    ids.add(pipeline.next());
+                }
+                assertEquals("300", pipeline.getCompletedPageId());
+            }
+            assertEquals(270, ids.size());
+        }
+    }
+
+    public void test_completedPageId_closeEarly() throws Exception {
+        final URL url = createFile(createXml(1000));
+        final List<Integer> ids = new ArrayList<>();
+        String completed = null;
+        try (PagePipeline<Integer> pipeline = new PagePipeline<>(new WikiXMLStAXParser(url), page -> Integer.valueOf(page.getId()), 4,
+                8)) {
+            while (pipeline.hasNext() && ids.size() < 50) {
+                ids.add(pipeline.next());
+            }
+            completed = pipeline.getCompletedPageId();
+        }
+        // pages transformed but not returned are not completed
+        assertNotNull(completed);
+        final int completedId = Integer.parseInt(completed);
+        for (int i = 1; i <= completedId; i++) {
+            assertTrue(ids.contains(i));
+        }
+    }
+
+    private String createXml(final int size) {
+        final StringBuilder buf = new StringBuilder("<mediawiki>");
+        for (int i = 1; i <= size; i++) {
+            buf.append("<page><title>Page ").append(i).append("</title><id>").append(i).append("</id>");
+            buf.append("<revision><text>Content ").append(i).append("</text></revision></page>\n");
+        }
+        return buf.append("</mediawiki>").toString();
+    }
+
+    private URL createFile(final String content) throws Exception {
+        final File file = File.createTempFile("wikipedia", ".xml");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file.toURI().toURL();
+    }
+}
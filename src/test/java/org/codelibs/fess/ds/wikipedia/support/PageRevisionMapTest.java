@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.codelibs.fess.ds.wikipedia.UnitDsTestCase;
+
+/**
+ * Test class for PageRevisionMap.
+ *
+ * @author CodeLibs
+ */
+public class PageRevisionMapTest extends UnitDsTestCase {
+
+    public void test_put() throws Exception {
+        final PageRevisionMap map = new PageRevisionMap(createDir(), 10);
+        assertEquals(-1, map.getRevisionId(1));
+        assertEquals(0, map.getHash(1));
+
+        map.put(1, 100, 12345L);
+        map.put(0, 0, -1L);
+        map.put(PageRevisionMap.MAX_PAGE_ID, PageRevisionMap.MAX_REVISION_ID, Long.MIN_VALUE);
+        assertEquals(3, map.size());
+        assertEquals(100, map.getRevisionId(1));
+        assertEquals(12345L, map.getHash(1));
+        assertEquals(0, map.getRevisionId(0));
+        assertEquals(-1L, map.getHash(0));
+        assertEquals(PageRevisionMap.MAX_REVISION_ID, map.getRevisionId(PageRevisionMap.MAX_PAGE_ID));
+        assertEquals(Long.MIN_VALUE, map.getHash(PageRevisionMap.MAX_PAGE_ID));
+
+        map.put(1, 101, 54321L);
+        assertEquals(3, map.size());
+        assertEquals(101, map.getRevisionId(1));
+        assertEquals(54321L, map.getHash(1));
+
+        // a revision id which does not fit is unknown
+        map.put(2, PageRevisionMap.MAX_REVISION_ID + 1, 1L);
+        assertEquals(0, map.getRevisionId(2));
+
+        try {
+            map.put(-1, 1, 1L);
+            fail("IllegalArgumentException is expected.");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void test_grow() throws Exception {
+        final Path dir = createDir();
+        // small segments to test a table over several segments
+        final PageRevisionMap map = new PageRevisionMap(dir, 10, 10);
+        final Map<Integer, Long> expected = new HashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            final int pageId = i % 2 == 0 ? i : Integer.MAX_VALUE - 1 - i * 7;
+            map.put(pageId, i, i * 31L + 1);
+            expected.put(pageId, i * 31L + 1);
+        }
+        assertEquals(expected.size(), map.size());
+        for (final Map.Entry<Integer, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getValue().longValue(), map.getHash(entry.getKey()));
+        }
+        assertEquals(-1, map.getRevisionId(1));
+
+        final Map<Integer, Long> actual = new HashMap<>();
+        map.forEach((pageId, revisionId, hash) -> {
+            assertEquals(hash, revisionId * 31L + 1);
+            actual.put(pageId, hash);
+        });
+        assertEquals(expected, actual);
+
+        // scratch files are deleted when they are mapped
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private Path createDir() throws Exception {
+        final File dir = Files.createTempDirectory("wikipedia").toFile();
+        dir.deleteOnExit();
+        return dir.toPath();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.codelibs.fess.ds.wikipedia.UnitDsTestCase;
+
+/**
+ * Test class for PageStateStore.
+ *
+ * @author CodeLibs
+ */
+public class PageStateStoreTest extends UnitDsTestCase {
+
+    public void test_isUnchanged() throws Exception {
+        final PageStateStore store = createStore();
+        final WikiPage page = createPage("1", "100", "abc");
+        assertFalse(store.isUnchanged(page));
+        store.update(page);
+        assertTrue(store.isUnchanged(page));
+        assertTrue(store.isUnchanged(createPage("1", "101", "abc")));
+        assertFalse(store.isUnchanged(createPage("1", "102", "def")));
+        assertFalse(store.isUnchanged(createPage("2", "100", "abc")));
+        assertEquals(2, store.getUnchangedCount());
+        assertEquals(1, store.size());
+    }
+
+    public void test_isUnchanged_withoutSha1() throws Exception {
+        final PageStateStore store = createStore();
+        store.update(createPage("1", "100", null));
+        assertTrue(store.isUnchanged(createPage("1", "100", null)));
+        assertFalse(store.isUnchanged(createPage("1", "101", null)));
+
+        // a page without a revision is always stored
+        store.update(createPage("2", null, null));
+        assertFalse(store.isUnchanged(createPage("2", null, null)));
+        assertEquals(1, store.size());
+    }
+
+    public void test_isUnchanged_withOlderRevision() throws Exception {
+        final PageStateStore store = createStore();
+        store.update(createPage("1", "200", "new"));
+        // a page in an incremental dump applied after a later one
+        assertTrue(store.isUnchanged(createPage("1", "150", "old")));
+        assertFalse(store.isUnchanged(createPage("1", "250", "newer")));
+        assertFalse(store.isUnchanged(createPage("1", null, "old")));
+
+        // the revision id is unknown
+        store.update(createPage("2", "99999999999", "new"));
+        assertFalse(store.isUnchanged(createPage("2", "150", "old")));
+        assertEquals(1, store.getUnchangedCount());
+    }
+
+    public void test_isUnchanged_withInvalidId() throws Exception {
+        final PageStateStore store = createStore();
+        for (final String id : new String[] { "abc", "-1", "2147483647", "99999999999", null }) {
+            store.update(createPage(id, "100", "abc"));
+            assertFalse(store.isUnchanged(createPage(id, "100", "abc")));
+        }
+        assertEquals(0, store.size());
+    }
+
+    public void test_saveAndLoad() throws Exception {
+        final File dir = Files.createTempDirectory("wikipedia").toFile();
+        dir.deleteOnExit();
+        final Path file = dir.toPath().resolve("state").resolve("enwiki.state");
+        assertEquals(0, PageStateStore.load(file).size());
+
+        final PageStateStore store = PageStateStore.load(file);
+        for (int i = 1; i <= 1000; i++) {
+            store.update(createPage(Integer.toString(i), Integer.toString(i * 10), i % 2 == 0 ? "sha" + i : null));
+        }
+        store.save(file);
+        store.save(file);
+        assertFalse(Files.exists(file.resolveSibling("enwiki.state.tmp")));
+
+        final PageStateStore loaded = PageStateStore.load(file);
+        assertEquals(1000, loaded.size());
+        assertTrue(loaded.isUnchanged(createPage("1", "10", null)));
+        assertTrue(loaded.isUnchanged(createPage("2", "21", "sha2")));
+        assertFalse(loaded.isUnchanged(createPage("3", "31", null)));
+        assertFalse(loaded.isUnchanged(createPage("1001", "10010", null)));
+
+        Files.write(file, new byte[] { 1, 2, 3, 4 });
+        try {
+            PageStateStore.load(file);
+            fail("IOException is expected.");
+        } catch (final IOException e) {
+            // expected
+        }
+
+        Files.delete(file);
+        Files.delete(file.getParent());
+    }
+
+    private PageStateStore createStore() throws Exception {
+        final File dir = Files.createTempDirectory("wikipedia").toFile();
+        dir.deleteOnExit();
+        return new PageStateStore(dir.toPath(), 10);
+    }
+
+    private WikiPage createPage(final String id, final String revisionId, final String sha1) {
+        final WikiPage page = new WikiPage();
+        page.setId(id);
+        page.setRevisionId(revisionId);
+        page.setSha1(sha1);
+        return page;
+    }
+}
@@ -18,8 +18,13 @@ package org.codelibs.fess.ds.wikipedia.support;
 import org.junit.jupiter.api.TestInfo;
 
 import java.io.StringReader;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
 
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
@@ -34,6 +39,37 @@ import org.xml.sax.InputSource;
  */
 public class SAXPageCallbackHandlerTest extends UnitDsTestCase {
 
+    static final String FIELDS_XML = "<mediawiki>\n" //
+            + "  <page>\n    <title>Tokio</title>\n    <ns>0</ns>\n    <id>10</id>\n    <redirect title=\"Tokyo &amp; Area\" />\n" //
+            + "    <revision>\n      <id>100</id>\n      <timestamp>2020-01-01T00:00:00Z</timestamp>\n" //
+            + "      <contributor>\n        <username>User</username>\n        <id>7</id>\n      </contributor>\n" //
+            + "      <text>#REDIRECT [[Tokyo]]</text>\n      <sha1>old</sha1>\n    </revision>\n" //
+            + "    <revision>\n      <id>101</id>\n      <parentid>100</parentid>\n      <timestamp>2021-01-01T00:00:00Z</timestamp>\n" //
+            + "      <model>wikitext</model>\n      <format>text/x-wiki</format>\n" //
+            + "      <text bytes=\"20\" xml:space=\"preserve\">#REDIRECT [[Tokyo]]\n</text>\n      <sha1>abc123</sha1>\n    </revision>\n" //
+            + "  </page>\n" //
+            + "  <page>\n    <title>Talk:Tokyo</title>\n    <ns>1</ns>\n    <id>11</id>\n" //
+            + "    <revision>\n      <id>200</id>\n      <text>Talk</text>\n    </revision>\n  </page>\n" //
+            + "</mediawiki>";
+
+    static final String FIELDS = "Tokio|10|0|Tokyo & Area|101|100|abc123|wikitext|text/x-wiki|2021-01-01T00:00:00Z|#REDIRECT [[Tokyo]]\n\n" //
+            + "Talk:Tokyo|11|1|null|200|null|null|null|null|null|Talk\n";
+
+    /**
+     * Returns the fields of the pages, one page per line.
+     */
+    static String describe(final List<WikiPage> pages) {
+        final StringBuilder buf = new StringBuilder();
+        for (final WikiPage page : pages) {
+            buf.append(page.getTitle()).append('|').append(page.getId()).append('|').append(page.getNamespace()).append('|');
+            buf.append(page.getRedirectTitle()).append('|').append(page.getRevisionId()).append('|').append(page.getParentId()).append('|');
+            buf.append(page.getSha1()).append('|').append(page.getModel()).append('|').append(page.getFormat()).append('|');
+            buf.append(page.getTimestamp() == null ? null : page.getTimestamp().toInstant()).append('|');
+            buf.append(page.getWikiText()).append('\n');
+        }
+        return buf.toString();
+    }
+
     public void test_parseSinglePage() throws Exception {
         final String xml = "<mediawiki>" + "<page>" + "<title>Test Page</title>" + "<id>123</id>" + "<revision>"
                 + "<timestamp>2023-01-15T10:30:00Z</timestamp>" + "<format>text/x-wiki</format>" + "<model>wikitext</model>"
@@ -168,6 +204,30 @@ public class SAXPageCallbackHandlerTest extends UnitDsTestCase {
         assertNotNull(pages.get(0).getTimestamp());
     }
 
+    public void test_parseTimestampMillis() throws Exception {
+        assertEquals(Instant.parse("2025-03-15T14:45:30Z").toEpochMilli(), SAXPageCallbackHandler.parseTimestampMillis("2025-03-15T14:45:30Z"));
+        assertEquals(0L, SAXPageCallbackHandler.parseTimestampMillis(" 1970-01-01T00:00:00Z\n"));
+        assertEquals(Instant.parse("2024-02-29T23:59:59Z").toEpochMilli(),
+                SAXPageCallbackHandler.parseTimestampMillis("2024-02-29T23:59:59Z"));
+        assertEquals(WikiPage.NO_TIMESTAMP, SAXPageCallbackHandler.parseTimestampMillis("invalid-date"));
+        assertEquals(WikiPage.NO_TIMESTAMP, SAXPageCallbackHandler.parseTimestampMillis(""));
+        assertEquals(WikiPage.NO_TIMESTAMP, SAXPageCallbackHandler.parseTimestampMillis("2023-01-15 10:30:00Z"));
+
+        // the same results as SimpleDateFormat, including lenient and old dates
+        final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+        for (final String value : new String[] { "2001-01-15T00:00:00Z", "1999-12-31T23:59:59Z", "2100-03-01T12:00:00Z",
+                "2000-02-29T00:00:00Z", "2023-02-29T00:00:00Z", "2016-12-31T23:59:60Z", "2023-13-01T00:00:00Z", "1582-10-15T00:00:00Z",
+                "1000-01-01T00:00:00Z", "2023-01-15T10:30:00Z123" }) {
+            assertEquals(value, sdf.parse(value).getTime(), SAXPageCallbackHandler.parseTimestampMillis(value));
+        }
+        final Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            final long timestamp = (long) (random.nextDouble() * 4102444800000L) / 1000 * 1000;
+            assertEquals(timestamp, SAXPageCallbackHandler.parseTimestampMillis(sdf.format(new Date(timestamp))));
+        }
+    }
+
     public void test_parseTimestamp_invalidFormat_logsWarning() throws Exception {
         final String xml = "<mediawiki>" + "<page>" + "<title>Test</title>" + "<revision>" + "<timestamp>invalid-date</timestamp>"
                 + "<text>Content</text>" + "</revision>" + "</page>" + "</mediawiki>";
@@ -229,6 +289,48 @@ public class SAXPageCallbackHandlerTest extends UnitDsTestCase {
         assertEquals("wikitext", page.getModel());
     }
 
+    public void test_parseLargePagesReusesBuffers() throws Exception {
+        final StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            large.append("* [[Item ").append(i).append("]] &amp; more\n");
+        }
+        final String largeText = large.toString();
+        final String xml = "<mediawiki>" + "<page>" + "<title>List of items</title>" + "<id>1</id>" + "<revision>" + "<text>"
+                + largeText + "</text>" + "</revision>" + "</page>" + "<page>" + "<title>Small</title>" + "<id>2</id>" + "<revision>"
+                + "<text>Small content</text>" + "</revision>" + "</page>" + "</mediawiki>";
+
+        final List<WikiPage> pages = new ArrayList<>();
+        final PageCallbackHandler callback = page -> pages.add(page);
+        final SAXPageCallbackHandler handler = new SAXPageCallbackHandler(callback);
+
+        parseXML(xml, handler);
+
+        assertEquals(2, pages.size());
+        assertEquals("List of items", pages.get(0).getTitle());
+        assertEquals(largeText.replace("&amp;", "&"), pages.get(0).getWikiText());
+        assertEquals("Small", pages.get(1).getTitle());
+        assertEquals("Small content", pages.get(1).getWikiText());
+    }
+
+    public void test_pageFilter() throws Exception {
+        final List<WikiPage> pages = new ArrayList<>();
+        final PageFilter filter = PageFilterTest.createFilter();
+        parseXML(PageFilterTest.FILTER_XML, new SAXPageCallbackHandler(pages::add, filter));
+
+        assertEquals(2, pages.size());
+        assertEquals("Article", pages.get(0).getTitle());
+        assertEquals("Article text", pages.get(0).getWikiText());
+        assertEquals("Other", pages.get(1).getTitle());
+        assertEquals("Other text", pages.get(1).getWikiText());
+        assertEquals(4, filter.getSkippedCount());
+    }
+
+    public void test_parsePageFields() throws Exception {
+        final List<WikiPage> pages = new ArrayList<>();
+        parseXML(FIELDS_XML, new SAXPageCallbackHandler(pages::add));
+        assertEquals(FIELDS, describe(pages));
+    }
+
     public void test_emptyMediawiki() throws Exception {
         final String xml = "<mediawiki></mediawiki>";
 
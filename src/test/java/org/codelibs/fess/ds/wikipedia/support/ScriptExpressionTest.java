@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.codelibs.fess.ds.wikipedia.UnitDsTestCase;
+
+/**
+ * Test class for ScriptExpression.
+ *
+ * @author CodeLibs
+ */
+public class ScriptExpressionTest extends UnitDsTestCase {
+
+    public void test_field() {
+        final Map<String, Object> fields = createFields();
+        assertEquals("Tokyo", ScriptExpression.compile("title", true).evaluate(fields));
+        assertNull(ScriptExpression.compile("format", true).evaluate(fields));
+        assertEquals("Tokyo", ScriptExpression.compile(" title ", true).evaluate(fields));
+        assertEquals("Tokyo", ScriptExpression.compile("title", false).evaluate(fields));
+        // a missing field is evaluated by the script engine
+        assertSame(ScriptExpression.NOT_EVALUATED, ScriptExpression.compile("missing", true).evaluate(fields));
+        assertSame(ScriptExpression.NOT_EVALUATED, ScriptExpression.compile("null", true).evaluate(fields));
+    }
+
+    public void test_literal() {
+        final Map<String, Object> fields = createFields();
+        assertEquals("ja", ScriptExpression.compile("\"ja\"", true).evaluate(fields));
+        assertEquals("ja.wikipedia.org", ScriptExpression.compile("'ja.wikipedia.org'", true).evaluate(fields));
+        assertEquals("", ScriptExpression.compile("\"\"", true).evaluate(fields));
+        assertEquals("it's", ScriptExpression.compile("\"it's\"", true).evaluate(fields));
+        assertNull(ScriptExpression.compile("\"ja\"", false));
+    }
+
+    public void test_length() {
+        final Map<String, Object> fields = createFields();
+        assertEquals(Integer.valueOf(11), ScriptExpression.compile("content.length()", true).evaluate(fields));
+        assertSame(ScriptExpression.NOT_EVALUATED, ScriptExpression.compile("format.length()", true).evaluate(fields));
+        assertSame(ScriptExpression.NOT_EVALUATED, ScriptExpression.compile("missing.length()", true).evaluate(fields));
+    }
+
+    public void test_concat() {
+        final Map<String, Object> fields = createFields();
+        assertEquals("https://ja.wikipedia.org/wiki/Tokyo",
+                ScriptExpression.compile("\"https://ja.wikipedia.org/wiki/\" + encodedTitle", true).evaluate(fields));
+        assertEquals("[Tokyo] null 11 100 true",
+                ScriptExpression.compile("'[' + title + '] ' + format + ' ' + content.length() + \" \" + count + ' ' + flag", true)
+                        .evaluate(fields));
+        assertEquals("t:" + fields.get("timestamp"), ScriptExpression.compile("'t:' + timestamp", true).evaluate(fields));
+        assertSame(ScriptExpression.NOT_EVALUATED, ScriptExpression.compile("'a' + missing", true).evaluate(fields));
+        assertSame(ScriptExpression.NOT_EVALUATED, ScriptExpression.compile("'a' + values", true).evaluate(fields));
+    }
+
+    public void test_notCompiled() {
+        for (final String script : new String[] { null, "", "title + 'a'", "count + 1", "\"${title}\"", "'a\\nb'", "'a' +", "'a' 'b'",
+                "title.trim()", "title ?: content", "'a' + title.substring(1)", "\"unclosed", "1", "$title" }) {
+            assertNull(script, ScriptExpression.compile(script, true));
+        }
+    }
+
+    private Map<String, Object> createFields() {
+        final Map<String, Object> fields = new HashMap<>();
+        fields.put("title", "Tokyo");
+        fields.put("encodedTitle", "Tokyo");
+        fields.put("content", "Tokyo text.");
+        fields.put("format", null);
+        fields.put("timestamp", new Date(0));
+        fields.put("count", 100L);
+        fields.put("flag", Boolean.TRUE);
+        fields.put("values", new String[] { "a" });
+        return fields;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.codelibs.fess.ds.wikipedia.UnitDsTestCase;
+
+/**
+ * Test class for TitleUtil.
+ *
+ * @author CodeLibs
+ */
+public class TitleUtilTest extends UnitDsTestCase {
+
+    public void test_strip() {
+        final String title = "Tokyo";
+        assertSame(title, TitleUtil.strip(title));
+        assertEquals("Tokyo", TitleUtil.strip("Tokyo \n \n"));
+        assertEquals(" Tokyo Tower", TitleUtil.strip(" Tokyo Tower\n"));
+        assertEquals("Tokyo\t", TitleUtil.strip("Tokyo\t"));
+        assertEquals("", TitleUtil.strip(" \n"));
+        assertEquals("", TitleUtil.strip(""));
+    }
+
+    public void test_encode() {
+        final String title = "Tokyo_Tower-1.5*";
+        assertSame(title, TitleUtil.encode(title));
+        for (final String value : new String[] { "", "Tokyo Tower", "C++", "AT&T", "100%", "a/b?c=d#e", "東京タワー", "Ünïcödé",
+                "Emoji 😀", "Lone \uD800 surrogate", "Lone \uDC00", "End \uD83D", "~!@#$^()[]{}|\\;:'\",<>`",
+                "\u007F\u0080߿ࠀ￿" }) {
+            assertEquals(value, URLEncoder.encode(value, StandardCharsets.UTF_8), TitleUtil.encode(value));
+        }
+    }
+
+    public void test_encode_random() {
+        final Random random = new Random(1);
+        final StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            buf.setLength(0);
+            final int length = random.nextInt(300);
+            for (int j = 0; j < length; j++) {
+                switch (random.nextInt(4)) {
+                case 0:
+                    buf.append((char) random.nextInt(0x80));
+                    break;
+                case 1:
+                    buf.append((char) random.nextInt(0x800));
+                    break;
+                case 2:
+                    buf.appendCodePoint(0x10000 + random.nextInt(0x10000));
+                    break;
+                default:
+                    buf.append((char) random.nextInt(0x10000));
+                    break;
+                }
+            }
+            final String value = buf.toString();
+            assertEquals(URLEncoder.encode(value, StandardCharsets.UTF_8), TitleUtil.encode(value));
+        }
+    }
+}
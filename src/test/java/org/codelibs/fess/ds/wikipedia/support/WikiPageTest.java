@@ -17,6 +17,7 @@ package org.codelibs.fess.ds.wikipedia.support;
 
 import org.junit.jupiter.api.TestInfo;
 
+import java.time.Instant;
 import java.util.Date;
 import java.util.List;
 
@@ -48,6 +49,24 @@ public class WikiPageTest extends UnitDsTestCase {
         assertEquals(timestamp, page.getTimestamp());
     }
 
+    public void test_timestampMillis() {
+        final WikiPage page = new WikiPage();
+        assertEquals(WikiPage.NO_TIMESTAMP, page.getTimestampMillis());
+        assertNull(page.getTimestamp());
+        assertNull(page.getTimestampInstant());
+
+        page.setTimestampMillis(1_700_000_000_000L);
+        assertEquals(new Date(1_700_000_000_000L), page.getTimestamp());
+        assertEquals(Instant.ofEpochMilli(1_700_000_000_000L), page.getTimestampInstant());
+
+        // the returned date is a copy
+        page.getTimestamp().setTime(0);
+        assertEquals(1_700_000_000_000L, page.getTimestampMillis());
+
+        page.setTimestamp(null);
+        assertEquals(WikiPage.NO_TIMESTAMP, page.getTimestampMillis());
+    }
+
     public void test_setAndGetFormat() {
         final WikiPage page = new WikiPage();
         page.setFormat("text/x-wiki");
@@ -159,6 +178,16 @@ public class WikiPageTest extends UnitDsTestCase {
         assertFalse(page.isStub());
     }
 
+    public void test_setWikiText_replacesParsedText() {
+        final WikiPage page = new WikiPage();
+        page.setWikiText("#REDIRECT [[Target]]");
+        assertTrue(page.isRedirect());
+        page.setWikiText("Plain article");
+        assertEquals("Plain article", page.getWikiText());
+        assertFalse(page.isRedirect());
+        assertNull(page.getRedirectPage());
+    }
+
     public void test_getText_returnsPlainText() {
         final WikiPage page = new WikiPage();
         page.setWikiText("'''Bold''' text");
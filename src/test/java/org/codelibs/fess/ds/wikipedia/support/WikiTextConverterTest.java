@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import org.codelibs.fess.ds.wikipedia.UnitDsTestCase;
+
+/**
+ * Test class for WikiTextConverter.
+ *
+ * @author CodeLibs
+ */
+public class WikiTextConverterTest extends UnitDsTestCase {
+
+    public void test_empty() {
+        assertNull(WikiTextConverter.toPlainText(null));
+        assertEquals("", WikiTextConverter.toPlainText(""));
+        assertEquals("Plain text", WikiTextConverter.toPlainText("Plain text"));
+    }
+
+    public void test_templates() {
+        assertEquals("a   b", WikiTextConverter.toPlainText("a {{Infobox|name={{lang|en|x}}|{{{1}}}}} b"));
+        assertEquals("a   b\nc", WikiTextConverter.toPlainText("a {{cite\n|title=x\n}} b\nc"));
+        assertEquals("a { b } c", WikiTextConverter.toPlainText("a { b } c"));
+        assertEquals("a {{ b   c {{d", WikiTextConverter.toPlainText("a {{ b {{x}} c {{d"));
+        assertEquals("{{{{ a   b", WikiTextConverter.toPlainText("{{{{ a {{{x}}} b"));
+    }
+
+    public void test_links() {
+        assertEquals("Link to Test Page", WikiTextConverter.toPlainText("Link to [[Test Page]]"));
+        assertEquals("the pages and Tokyo", WikiTextConverter.toPlainText("the [[page]]s and [[Tokyo, Japan|Tokyo]]"));
+        assertEquals("Label: bold", WikiTextConverter.toPlainText("[[Target|Label: '''bold''']]"));
+        assertEquals("Target", WikiTextConverter.toPlainText("[[Target|]]"));
+        assertEquals("  text  ", WikiTextConverter.toPlainText("[[File:A.jpg|thumb|A [[nested]] caption]] text [[Category:Test|Sort]]"));
+        assertEquals("a [[b", WikiTextConverter.toPlainText("a [[b"));
+    }
+
+    public void test_externalLinks() {
+        assertEquals("See Example site.", WikiTextConverter.toPlainText("See [https://example.com Example ''site'']."));
+        assertEquals("Ref   here", WikiTextConverter.toPlainText("Ref [http://example.com] here"));
+        assertEquals("[sic] and [http://x", WikiTextConverter.toPlainText("[sic] and [http://x"));
+    }
+
+    public void test_tags() {
+        assertEquals("Text with  bold  and  x ", WikiTextConverter.toPlainText("Text with <b>bold</b> and <span class=\"a\">x</span>"));
+        assertEquals("Some text  more  text", WikiTextConverter.toPlainText("Some text<ref name=\"a\">Ref [[x]]</ref> more<ref name=\"a\" /> text"));
+        assertEquals("a   b", WikiTextConverter.toPlainText("a <!-- comment\n<b>x</b> --> b"));
+        assertEquals("a   b", WikiTextConverter.toPlainText("a &lt;ref&gt;note&lt;/ref&gt; b"));
+        assertEquals("1 < 2 and 3 > 2", WikiTextConverter.toPlainText("1 < 2 and 3 > 2"));
+        assertEquals("Text with   entities", WikiTextConverter.toPlainText("Text with &lt;tag&gt; entities"));
+    }
+
+    public void test_entities() {
+        assertEquals("a & b \"c\" d'e f g", WikiTextConverter.toPlainText("a &amp; b &quot;c&quot; d&apos;e f&#160;g"));
+        assertEquals("x > y あ", WikiTextConverter.toPlainText("x &gt; y &#x3042;"));
+        assertEquals("AT&T &unknown; &#xZZ;", WikiTextConverter.toPlainText("AT&T &unknown; &#xZZ;"));
+    }
+
+    public void test_quotes() {
+        assertEquals("Text with bold and italic, don't", WikiTextConverter.toPlainText("Text with '''bold''' and ''italic'', don't"));
+        assertEquals("bold italic", WikiTextConverter.toPlainText("'''''bold italic'''''"));
+    }
+
+    public void test_largeBrokenText() {
+        final String text = "{{[[<ref>&lt;".repeat(100000);
+        final long start = System.currentTimeMillis();
+        final String plainText = WikiTextConverter.toPlainText(text);
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        assertTrue(plainText.startsWith("{{[["));
+    }
+
+    public void test_manyUnclosedExternalLinks() {
+        final String text = "[http://x ".repeat(200000);
+        final long start = System.currentTimeMillis();
+        final String plainText = WikiTextConverter.toPlainText(text);
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        assertEquals(text, plainText);
+
+        // a closed link on the next line is converted
+        assertEquals("[http://x [http://x \nlabel", WikiTextConverter.toPlainText("[http://x [http://x \n[http://y label]"));
+    }
+
+    public void test_manyRefsAndComments() {
+        // the escaped end tokens are absent, which must not make every ref and comment scan to the end of the text
+        final String unit = "a<ref name=\"n\">note</ref> b<!-- comment --> c<ref>x</ref>\n";
+        final String text = unit.repeat(100000);
+        final long start = System.currentTimeMillis();
+        final String plainText = WikiTextConverter.toPlainText(text);
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        assertEquals(WikiTextConverter.toPlainText(unit).repeat(100000), plainText);
+
+        final String escaped = "a&lt;ref&gt;note&lt;/ref&gt; b&lt;!-- comment --&gt; c\n".repeat(100000);
+        final long escapedStart = System.currentTimeMillis();
+        assertEquals("a  b  c\n".repeat(100000), WikiTextConverter.toPlainText(escaped));
+        assertTrue(System.currentTimeMillis() - escapedStart < 10000);
+    }
+}
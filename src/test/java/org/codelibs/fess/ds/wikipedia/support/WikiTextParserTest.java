@@ -318,6 +318,31 @@ public class WikiTextParserTest extends UnitDsTestCase {
         assertNull(translatedTitle);
     }
 
+    public void test_getTranslatedTitle_withSharedPattern() {
+        final WikiTextParser parser1 = new WikiTextParser("[[en:First]]\n[[ja:Japanese]]");
+        final WikiTextParser parser2 = new WikiTextParser("[[en:Second]]");
+        assertEquals("First", parser1.getTranslatedTitle("en"));
+        assertEquals("Second", parser2.getTranslatedTitle("en"));
+        assertNull(parser2.getTranslatedTitle("ja"));
+        assertEquals("Japanese", parser1.getTranslatedTitle("ja"));
+    }
+
+    public void test_getLinks_withEmptyTarget() {
+        final WikiTextParser parser = new WikiTextParser("[[|Label]] [[Target|]] [[Other|Label|More]]");
+        final ArrayList<String> links = parser.getLinks();
+        assertEquals(2, links.size());
+        assertEquals("Target", links.get(0));
+        assertEquals("Other", links.get(1));
+    }
+
+    public void test_getRedirectText_beforeIsRedirect() {
+        final WikiTextParser parser = new WikiTextParser("#REDIRECT [[Target Page]]");
+        assertEquals("Target Page", parser.getRedirectText());
+        assertTrue(parser.isRedirect());
+        assertFalse(parser.isStub());
+        assertFalse(parser.isDisambiguationPage());
+    }
+
     public void test_getCategories_caching() {
         final String wikiText = "[[Category:Test]]";
         final WikiTextParser parser = new WikiTextParser(wikiText);
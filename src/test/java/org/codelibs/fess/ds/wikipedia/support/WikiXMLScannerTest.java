@@ -0,0 +1,177 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.codelibs.fess.ds.wikipedia.UnitDsTestCase;
+import org.codelibs.fess.exception.DataStoreException;
+
+/**
+ * Test class for WikiXMLScanner.
+ *
+ * @author CodeLibs
+ */
+public class WikiXMLScannerTest extends UnitDsTestCase {
+
+    private static final String XML = "<mediawiki xmlns=\"http://www.mediawiki.org/xml/export-0.10/\">" //
+            + "<siteinfo><sitename>Wikipedia</sitename></siteinfo>" //
+            + "<page>\n  <title>Page &amp; One</title>\n  <ns>0</ns>\n  <id>1</id>\n" //
+            + "  <redirect title=\"Other\" />\n" //
+            + "  <revision><id>100</id><timestamp>2023-01-01T00:00:00Z</timestamp>" //
+            + "<contributor><username>User</username><id>5</id></contributor>" //
+            + "<model>wikitext</model><format>text/x-wiki</format>" //
+            + "<text bytes=\"11\" xml:space=\"preserve\">&lt;ref&gt;&quot;a&apos;&#65;&#x3042;日本</text></revision>\n</page>" //
+            + "<page><title>Page Two</title><id>2</id><revision><id>200</id><text>Content two</text></revision></page>" //
+            + "<page><title>Page Three</title><id>3</id><revision><id>300</id><text bytes=\"0\" /></revision></page>" //
+            + "</mediawiki>";
+
+    public void test_iterator() throws Exception {
+        final Iterator<WikiPage> pages = new WikiXMLScanner(createFile(XML)).iterator();
+
+        final WikiPage page1 = pages.next();
+        assertEquals("Page & One", page1.getTitle());
+        assertEquals("1", page1.getId());
+        assertEquals("wikitext", page1.getModel());
+        assertEquals("text/x-wiki", page1.getFormat());
+        assertNotNull(page1.getTimestamp());
+        assertEquals("<ref>\"a'Aあ日本", page1.getWikiText());
+
+        final WikiPage page2 = pages.next();
+        assertEquals("Page Two", page2.getTitle());
+        assertEquals("2", page2.getId());
+        assertNull(page2.getTimestamp());
+        assertEquals("Content two", page2.getWikiText());
+
+        final WikiPage page3 = pages.next();
+        assertEquals("3", page3.getId());
+        assertEquals("", page3.getWikiText());
+
+        assertFalse(pages.hasNext());
+    }
+
+    public void test_sameAsStAXParser() throws Exception {
+        final Random random = new Random(1);
+        final StringBuilder xml = new StringBuilder("<mediawiki>\n");
+        for (int i = 0; i < 300; i++) {
+            xml.append("  <page>\n    <title>Title ").append(i).append(" &amp; ページ</title>\n");
+            xml.append("    <ns>0</ns>\n    <id>").append(i + 1).append("</id>\n");
+            xml.append("    <revision>\n      <id>").append(1000 + i).append("</id>\n");
+            xml.append("      <timestamp>2024-02-0").append(i % 9 + 1).append("T12:00:00Z</timestamp>\n");
+            xml.append("      <text bytes=\"1\" xml:space=\"preserve\">");
+            final int size = i == 150 ? 3 * 1024 * 1024 : random.nextInt(20000);
+            for (int j = 0; j < size; j += 10) {
+                xml.append(j % 7 == 0 ? "&lt;b&gt;あ" : "[[link]] \r\n");
+            }
+            xml.append("</text>\n    </revision>\n  </page>\n");
+        }
+        xml.append("</mediawiki>\n");
+        final URL url = createFile(xml.toString());
+
+        try (Stream<WikiPage> scanned = new WikiXMLScanner(url).stream(); Stream<WikiPage> parsed = new WikiXMLStAXParser(url).stream()) {
+            final List<WikiPage> expected = parsed.collect(Collectors.toList());
+            final List<WikiPage> actual = scanned.collect(Collectors.toList());
+            assertEquals(300, actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getTitle(), actual.get(i).getTitle());
+                assertEquals(expected.get(i).getId(), actual.get(i).getId());
+                assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+                assertEquals(expected.get(i).getWikiText(), actual.get(i).getWikiText());
+            }
+        }
+    }
+
+    public void test_historyDump() throws Exception {
+        final String xml = "<mediawiki><page><title>History</title><id>7</id>" //
+                + "<revision><id>1</id><timestamp>2020-01-01T00:00:00Z</timestamp><model>wikitext</model><text>old</text></revision>" //
+                + "<revision><id>2</id><timestamp>2021-01-01T00:00:00Z</timestamp><text>new</text><sha1>abc</sha1></revision>" //
+                + "</page></mediawiki>";
+        final Iterator<WikiPage> pages = new WikiXMLScanner(createFile(xml)).iterator();
+        final WikiPage page = pages.next();
+        assertEquals("7", page.getId());
+        assertEquals("new", page.getWikiText());
+        assertEquals("wikitext", page.getModel());
+        assertEquals(SAXPageCallbackHandler.parseTimestamp("2021-01-01T00:00:00Z"), page.getTimestamp());
+        assertFalse(pages.hasNext());
+    }
+
+    public void test_truncatedPage() throws Exception {
+        final Iterator<WikiPage> pages = new WikiXMLScanner(createFile("<mediawiki><page><title>Broken</title>")).iterator();
+        try {
+            pages.hasNext();
+            fail("DataStoreException is expected.");
+        } catch (final DataStoreException e) {
+            // expected
+        }
+    }
+
+    public void test_tooLargePage() throws Exception {
+        final StringBuilder xml = new StringBuilder("<mediawiki><page><title>Large</title><revision><text>");
+        xml.append("a".repeat(3 * 1024 * 1024));
+        xml.append("</text></revision></page></mediawiki>");
+        final WikiXMLScanner scanner = new WikiXMLScanner(createFile(xml.toString()));
+        scanner.setMaxPageSize(2 * 1024 * 1024);
+        try {
+            scanner.iterator().hasNext();
+            fail("DataStoreException is expected.");
+        } catch (final DataStoreException e) {
+            // expected
+        }
+    }
+
+    public void test_decode() throws Exception {
+        final byte[] bytes = "a&amp;b&#x1F600;c\r\nd\re".getBytes(StandardCharsets.UTF_8);
+        assertEquals("a&b😀c\nd\ne", WikiXMLScanner.decode(bytes, 0, bytes.length));
+    }
+
+    public void test_pageFields() throws Exception {
+        try (Stream<WikiPage> stream = new WikiXMLScanner(createFile(SAXPageCallbackHandlerTest.FIELDS_XML)).stream()) {
+            assertEquals(SAXPageCallbackHandlerTest.FIELDS, SAXPageCallbackHandlerTest.describe(stream.collect(Collectors.toList())));
+        }
+    }
+
+    public void test_pageFilter() throws Exception {
+        final WikiXMLScanner parser = new WikiXMLScanner(createFile(PageFilterTest.FILTER_XML));
+        final PageFilter filter = PageFilterTest.createFilter();
+        parser.setPageFilter(filter);
+        final List<WikiPage> pages;
+        try (Stream<WikiPage> stream = parser.stream()) {
+            pages = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(2, pages.size());
+        assertEquals("1", pages.get(0).getId());
+        assertEquals("Article text", pages.get(0).getWikiText());
+        assertEquals("6", pages.get(1).getId());
+        assertEquals("Other text", pages.get(1).getWikiText());
+        assertEquals(4, filter.getSkippedCount());
+    }
+
+    private URL createFile(final String content) throws Exception {
+        final File file = File.createTempFile("wikipedia", ".xml");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file.toURI().toURL();
+    }
+}
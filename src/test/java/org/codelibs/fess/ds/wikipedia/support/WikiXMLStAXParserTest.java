@@ -0,0 +1,371 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.wikipedia.support;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.codelibs.fess.ds.wikipedia.UnitDsTestCase;
+import org.codelibs.fess.ds.wikipedia.bzip2.CBZip2OutputStream;
+import org.codelibs.fess.exception.DataStoreException;
+
+/**
+ * Test class for WikiXMLStAXParser.
+ *
+ * @author CodeLibs
+ */
+public class WikiXMLStAXParserTest extends UnitDsTestCase {
+
+    private static final String XML = "<mediawiki xmlns=\"http://www.mediawiki.org/xml/export-0.10/\">" //
+            + "<siteinfo><sitename>Wikipedia</sitename></siteinfo>" //
+            + "<page>\n  <title>Page One</title>\n  <ns>0</ns>\n  <id>1</id>\n" //
+            + "  <revision><id>100</id><timestamp>2023-01-01T00:00:00Z</timestamp>" //
+            + "<contributor><username>User</username><id>5</id></contributor>" //
+            + "<model>wikitext</model><format>text/x-wiki</format>" //
+            + "<text bytes=\"11\" xml:space=\"preserve\">Content &amp; one</text></revision>\n</page>" //
+            + "<page><title>Page Two</title><id>2</id><revision><id>200</id><text>Content two</text></revision></page>" //
+            + "<page><title>Page Three</title><id>3</id><revision><id>300</id><text /></revision></page>" //
+            + "</mediawiki>";
+
+    public void test_iterator() throws Exception {
+        final WikiXMLStAXParser parser = new WikiXMLStAXParser(createFile(XML));
+        final Iterator<WikiPage> pages = parser.iterator();
+
+        assertTrue(pages.hasNext());
+        final WikiPage page1 = pages.next();
+        assertEquals("Page One", page1.getTitle());
+        assertEquals("1", page1.getId());
+        assertEquals("wikitext", page1.getModel());
+        assertEquals("text/x-wiki", page1.getFormat());
+        assertNotNull(page1.getTimestamp());
+        assertEquals("Content & one", page1.getWikiText());
+
+        final WikiPage page2 = pages.next();
+        assertEquals("Page Two", page2.getTitle());
+        assertEquals("2", page2.getId());
+        assertNull(page2.getTimestamp());
+        assertEquals("Content two", page2.getWikiText());
+
+        final WikiPage page3 = pages.next();
+        assertEquals("3", page3.getId());
+        assertEquals("", page3.getWikiText());
+
+        assertFalse(pages.hasNext());
+        try {
+            pages.next();
+            fail("NoSuchElementException is expected.");
+        } catch (final NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    public void test_getIterator() throws Exception {
+        for (final WikiXMLParser parser : new WikiXMLParser[] { new WikiXMLStAXParser(createFile(XML)),
+                new WikiXMLScanner(createFile(XML)) }) {
+            final WikiPageIterator pages = parser.getIterator();
+            final List<String> ids = new ArrayList<>();
+            while (pages.hasMorePages()) {
+                ids.add(pages.nextPage().getId());
+            }
+            assertEquals(List.of("1", "2", "3"), ids);
+            assertNull(pages.nextPage());
+            parser.close();
+        }
+    }
+
+    public void test_stream() throws Exception {
+        final WikiXMLStAXParser parser = new WikiXMLStAXParser(createFile(XML));
+        try (Stream<WikiPage> pages = parser.stream()) {
+            assertEquals(List.of("1", "2"), pages.limit(2).map(WikiPage::getId).collect(Collectors.toList()));
+        }
+    }
+
+    public void test_parse() throws Exception {
+        final List<String> titles = new ArrayList<>();
+        final WikiXMLStAXParser parser = new WikiXMLStAXParser(createFile(XML));
+        parser.setPageCallback(page -> titles.add(page.getTitle()));
+        parser.parse();
+        assertEquals(List.of("Page One", "Page Two", "Page Three"), titles);
+    }
+
+    public void test_invalidXml() throws Exception {
+        final WikiXMLStAXParser parser = new WikiXMLStAXParser(createFile("<mediawiki><page><title>Broken</title>"));
+        final Iterator<WikiPage> pages = parser.iterator();
+        try {
+            pages.hasNext();
+            fail("DataStoreException is expected.");
+        } catch (final DataStoreException e) {
+            // expected
+        }
+    }
+
+    public void test_pageFields() throws Exception {
+        try (Stream<WikiPage> stream = new WikiXMLStAXParser(createFile(SAXPageCallbackHandlerTest.FIELDS_XML)).stream()) {
+            assertEquals(SAXPageCallbackHandlerTest.FIELDS, SAXPageCallbackHandlerTest.describe(stream.collect(Collectors.toList())));
+        }
+    }
+
+    public void test_pageFilter() throws Exception {
+        final WikiXMLStAXParser parser = new WikiXMLStAXParser(createFile(PageFilterTest.FILTER_XML));
+        final PageFilter filter = PageFilterTest.createFilter();
+        parser.setPageFilter(filter);
+        final List<WikiPage> pages;
+        try (Stream<WikiPage> stream = parser.stream()) {
+            pages = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(2, pages.size());
+        assertEquals("1", pages.get(0).getId());
+        assertEquals("Article text", pages.get(0).getWikiText());
+        assertEquals("6", pages.get(1).getId());
+        assertEquals("Other text", pages.get(1).getWikiText());
+        assertEquals(4, filter.getSkippedCount());
+    }
+
+    public void test_startPageId() throws Exception {
+        final File indexFile = File.createTempFile("wikipedia", "-index.txt");
+        indexFile.deleteOnExit();
+        final URL url = createMultiStreamFile(indexFile);
+
+        for (final WikiXMLParser parser : new WikiXMLParser[] { new WikiXMLStAXParser(url), new WikiXMLSAXParser(url),
+                new WikiXMLScanner(url) }) {
+            // reads from the stream containing the page
+            parser.setMultiStreamIndexFile(indexFile.toURI().toURL());
+            parser.setStartPageId(23);
+            assertEquals(List.of(21, 50), readPageIds(parser));
+        }
+
+        for (final WikiXMLParser parser : new WikiXMLParser[] { new WikiXMLStAXParser(url), new WikiXMLSAXParser(url),
+                new WikiXMLScanner(url) }) {
+            parser.setMultiStreamIndexFile(indexFile.toURI().toURL());
+            parser.setStartPageId(23);
+            final PageFilter filter = new PageFilter();
+            filter.setMinPageId(23);
+            parser.setPageFilter(filter);
+            assertEquals(List.of(23, 50), readPageIds(parser));
+            assertEquals(2, filter.getSkippedCount());
+        }
+
+        // the dump is read from the beginning without an index
+        final WikiXMLParser parser = new WikiXMLStAXParser(url);
+        parser.setStartPageId(23);
+        assertEquals(List.of(1, 50), readPageIds(parser));
+    }
+
+    public void test_endPageId() throws Exception {
+        final File indexFile = File.createTempFile("wikipedia", "-index.txt");
+        indexFile.deleteOnExit();
+        final URL url = createMultiStreamFile(indexFile);
+
+        for (final WikiXMLParser parser : new WikiXMLParser[] { new WikiXMLStAXParser(url), new WikiXMLSAXParser(url),
+                new WikiXMLScanner(url) }) {
+            // reads to the end of the stream containing the page
+            parser.setMultiStreamIndexFile(indexFile.toURI().toURL());
+            parser.setStartPageId(15);
+            parser.setEndPageId(33);
+            assertEquals(List.of(11, 40), readPageIds(parser));
+        }
+
+        final WikiXMLParser parser = new WikiXMLStAXParser(url);
+        parser.setMultiStreamIndexFile(indexFile.toURI().toURL());
+        parser.setEndPageId(33);
+        final PageFilter filter = new PageFilter();
+        filter.setMaxPageId(33);
+        parser.setPageFilter(filter);
+        assertEquals(List.of(1, 33), readPageIds(parser));
+        assertEquals(7, filter.getSkippedCount());
+
+        // no page in the range
+        final WikiXMLParser emptyParser = new WikiXMLStAXParser(url);
+        emptyParser.setMultiStreamIndexFile(indexFile.toURI().toURL());
+        emptyParser.setStartPageId(33);
+        emptyParser.setEndPageId(25);
+        assertEquals(List.of(), readPageIds(emptyParser));
+    }
+
+    public void test_offsetRange() throws Exception {
+        final File indexFile = File.createTempFile("wikipedia", "-index.txt");
+        indexFile.deleteOnExit();
+        final URL url = createMultiStreamFile(indexFile);
+        final long[] offsets = MultiStreamIndex.load(indexFile.toURI().toURL()).getOffsets();
+
+        for (final WikiXMLParser parser : new WikiXMLParser[] { new WikiXMLStAXParser(url), new WikiXMLSAXParser(url),
+                new WikiXMLScanner(url) }) {
+            // streams starting in [offsets[1] - 1, offsets[3])
+            parser.setMultiStreamIndexFile(indexFile.toURI().toURL());
+            parser.setStartOffset(offsets[1] - 1);
+            parser.setEndOffset(offsets[3]);
+            assertEquals(List.of(11, 30), readPageIds(parser));
+        }
+
+        // consecutive ranges read each page once
+        final List<Integer> ids = new ArrayList<>();
+        final long middle = (offsets[0] + offsets[4]) / 2;
+        for (final long[] range : new long[][] { { 0, middle }, { middle, Long.MAX_VALUE } }) {
+            final WikiXMLParser parser = new WikiXMLScanner(url);
+            parser.setMultiStreamIndexFile(indexFile.toURI().toURL());
+            parser.setStartOffset(range[0]);
+            parser.setEndOffset(range[1]);
+            try (PagePipeline<Integer> pipeline = new PagePipeline<>(parser, page -> Integer.valueOf(page.getId()), 1, 4)) {
+                while (pipeline.hasNext()) {
+                    ids.add(pipeline.next());
+                }
+            }
+        }
+        assertEquals(50, ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i + 1, ids.get(i).intValue());
+        }
+    }
+
+    public void test_offsetRange_afterLastStream() throws Exception {
+        final File indexFile = File.createTempFile("wikipedia", "-index.txt");
+        indexFile.deleteOnExit();
+        final URL url = createMultiStreamFile(indexFile);
+        final long[] offsets = MultiStreamIndex.load(indexFile.toURI().toURL()).getOffsets();
+
+        for (final WikiXMLParser parser : new WikiXMLParser[] { new WikiXMLStAXParser(url), new WikiXMLSAXParser(url),
+                new WikiXMLScanner(url) }) {
+            // no stream starts at or after the offset, so the dump has no page
+            parser.setMultiStreamIndexFile(indexFile.toURI().toURL());
+            parser.setStartOffset(offsets[4] + 1);
+            assertEquals(List.of(), readPageIds(parser));
+        }
+
+        for (final WikiXMLParser parser : new WikiXMLParser[] { new WikiXMLStAXParser(url), new WikiXMLSAXParser(url),
+                new WikiXMLScanner(url) }) {
+            // the range ends before it starts
+            parser.setMultiStreamIndexFile(indexFile.toURI().toURL());
+            parser.setStartOffset(offsets[3]);
+            parser.setEndOffset(offsets[2]);
+            assertEquals(List.of(), readPageIds(parser));
+        }
+    }
+
+    public void test_endPageId_firstStreamInIndex() throws Exception {
+        final File indexFile = File.createTempFile("wikipedia", "-index.txt");
+        indexFile.deleteOnExit();
+        final URL url = createMultiStreamFile(indexFile, false);
+        assertEquals(0L, MultiStreamIndex.load(indexFile.toURI().toURL()).getOffsets()[0]);
+
+        for (final WikiXMLParser parser : new WikiXMLParser[] { new WikiXMLStAXParser(url), new WikiXMLSAXParser(url),
+                new WikiXMLScanner(url) }) {
+            parser.setMultiStreamIndexFile(indexFile.toURI().toURL());
+            parser.setEndPageId(33);
+            assertEquals(List.of(1, 40), readPageIds(parser));
+        }
+
+        for (final WikiXMLParser parser : new WikiXMLParser[] { new WikiXMLStAXParser(url), new WikiXMLSAXParser(url),
+                new WikiXMLScanner(url) }) {
+            // the last page is before the first stream
+            parser.setMultiStreamIndexFile(indexFile.toURI().toURL());
+            parser.setEndPageId(0);
+            assertEquals(List.of(), readPageIds(parser));
+        }
+
+        for (final WikiXMLParser parser : new WikiXMLParser[] { new WikiXMLStAXParser(url), new WikiXMLSAXParser(url),
+                new WikiXMLScanner(url) }) {
+            // no stream starts before the offset
+            parser.setMultiStreamIndexFile(indexFile.toURI().toURL());
+            parser.setEndOffset(0);
+            assertEquals(List.of(), readPageIds(parser));
+        }
+    }
+
+    /**
+     * Creates a multistream dump with the site info in the first stream and 10 pages in each of the other 5 streams.
+     */
+    private URL createMultiStreamFile(final File indexFile) throws Exception {
+        return createMultiStreamFile(indexFile, true);
+    }
+
+    /**
+     * Creates a multistream dump with 10 pages in each of 5 streams.
+     * Without siteInfoStream, the site info is in the first stream of the pages, which starts at offset 0.
+     */
+    private URL createMultiStreamFile(final File indexFile, final boolean siteInfoStream) throws Exception {
+        final File file = File.createTempFile("wikipedia", ".xml.bz2");
+        file.deleteOnExit();
+        final StringBuilder index = new StringBuilder();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final String header = "<mediawiki>\n<siteinfo><sitename>Test</sitename></siteinfo>\n";
+        if (siteInfoStream) {
+            writeStream(out, header);
+        }
+        for (int i = 0; i < 5; i++) {
+            final long offset = out.size();
+            final StringBuilder buf = new StringBuilder();
+            if (i == 0 && !siteInfoStream) {
+                buf.append(header);
+            }
+            for (int id = i * 10 + 1; id <= i * 10 + 10; id++) {
+                buf.append("<page><title>Page ").append(id).append("</title><id>").append(id).append("</id>");
+                buf.append("<revision><text>Content ").append(id).append("</text></revision></page>\n");
+                index.append(offset).append(':').append(id).append(":Page ").append(id).append('\n');
+            }
+            if (i == 4) {
+                buf.append("</mediawiki>\n");
+            }
+            writeStream(out, buf.toString());
+        }
+        Files.write(file.toPath(), out.toByteArray());
+        Files.write(indexFile.toPath(), index.toString().getBytes(StandardCharsets.UTF_8));
+        return file.toURI().toURL();
+    }
+
+    /**
+     * Returns the first and the last page ids, checking that the ids are consecutive.
+     */
+    private List<Integer> readPageIds(final WikiXMLParser parser) throws Exception {
+        final List<Integer> ids = new ArrayList<>();
+        try (PagePipeline<Integer> pipeline = new PagePipeline<>(parser, page -> Integer.valueOf(page.getId()), 1, 4)) {
+            while (pipeline.hasNext()) {
+                ids.add(pipeline.next());
+            }
+        }
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        for (int i = 1; i < ids.size(); i++) {
+            assertEquals(ids.get(i - 1) + 1, ids.get(i).intValue());
+        }
+        return List.of(ids.get(0), ids.get(ids.size() - 1));
+    }
+
+    private void writeStream(final ByteArrayOutputStream out, final String text) throws Exception {
+        out.write('B');
+        out.write('Z');
+        final CBZip2OutputStream bzip2Out = new CBZip2OutputStream(out, 1);
+        bzip2Out.write(text.getBytes(StandardCharsets.UTF_8));
+        bzip2Out.finish();
+    }
+
+    private URL createFile(final String content) throws Exception {
+        final File file = File.createTempFile("wikipedia", ".xml");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file.toURI().toURL();
+    }
+}